@@ -0,0 +1,172 @@
+package game;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameCoreBenchmark {
+    static final long SEED = 4;
+
+    // Power of 2 so the script can be looped with a mask
+    private static final int SCRIPT_LENGTH = 1024;
+    private static final int MASK = SCRIPT_LENGTH - 1;
+
+    /** Seeded input for each tick, mostly empty like actual play. */
+    static NewUserInput[] inputScript() {
+        Random rng = new Random(SEED);
+        NewUserInput[] script = new NewUserInput[SCRIPT_LENGTH];
+        for (int i = 0; i < SCRIPT_LENGTH; i++) {
+            script[i] = rng.nextInt(4) == 0
+                    ? new NewUserInput(rng.nextInt(2), rng.nextInt(2), rng.nextInt(2), rng.nextInt(3))
+                    : NewUserInput.NONE;
+        }
+        return script;
+    }
+
+    /** Game partway through being played, with a piece falling. */
+    static GameCore midGame(int ticks) {
+        NewUserInput[] script = inputScript();
+        GameCore game = new GameCore(Vibrator.NONE, SEED);
+        for (int i = 0; i < ticks || !game.hasActivePiece(); i++) {
+            if (game.tick(script[i & MASK]) == TickResult.GAME_OVER) {
+                throw new IllegalStateException("Game ended after " + i + " ticks");
+            }
+        }
+        return game;
+    }
+
+    @State(Scope.Thread)
+    public static class Playing {
+        final NewUserInput[] script = inputScript();
+        int scriptPos;
+        GameCore game;
+
+        @Setup
+        public void setUp() {
+            game = new GameCore(Vibrator.NONE, SEED);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MidGame {
+        final InputQueue input = new InputQueue();
+        GameCore game;
+
+        @Setup
+        public void setUp() {
+            game = midGame(300);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FilledBoard {
+        // Rows at the bottom of the board filled in, each with a hole unless it's meant to be full
+        private static final int FILLED_ROWS = 8;
+
+        @Param({"0", "1", "2", "3", "4"})
+        public int fullRows;
+
+        final int[] rows = new int[GameCore.BOARD_H];
+        GameCore game;
+
+        @Setup
+        public void setUp() {
+            Random rng = new Random(SEED);
+            int allCells = (1 << GameCore.BOARD_W) - 1;
+            for (int i = 0; i < FILLED_ROWS; i++) {
+                boolean full = i % 2 == 0 && i / 2 < fullRows;
+                rows[GameCore.BOARD_H - 1 - i] = full ? allCells : allCells & ~(1 << rng.nextInt(GameCore.BOARD_W));
+            }
+            game = new GameCore(Vibrator.NONE, SEED);
+        }
+    }
+
+    /** Plays through the script, starting over with the same seed whenever a game ends. */
+    @Benchmark
+    public TickResult tick(Playing state) {
+        TickResult result = state.game.tick(state.script[state.scriptPos++ & MASK]);
+        if (result == TickResult.GAME_OVER) {
+            state.game = new GameCore(Vibrator.NONE, SEED);
+        }
+        return result;
+    }
+
+    /** Every move the active piece could try in a tick. */
+    @Benchmark
+    public int isLegalMove(MidGame state) {
+        GameCore game = state.game;
+        int rotation = game.getActiveRotation();
+        int x = game.getActiveX();
+        int y = game.getActiveY();
+        int legal = 0;
+        legal += game.isLegalMove(rotation, x - 1, y) ? 1 : 0;
+        legal += game.isLegalMove(rotation, x + 1, y) ? 1 : 0;
+        legal += game.isLegalMove(Pieces.nextRotation(rotation), x, y) ? 1 : 0;
+        legal += game.isLegalMove(rotation, x, y + 1) ? 1 : 0;
+        return legal;
+    }
+
+    /** Where the active piece would land, which the ghost & hard drop need after every move. */
+    @Benchmark
+    public int getLandingY(MidGame state) {
+        return state.game.getLandingY();
+    }
+
+    /**
+     * Moves going through the input queue, which publish one new snapshot each call as the piece has moved, even
+     * though it ends up where it started. See {@link #drainQueuedInput} for the moves alone.
+     */
+    @Benchmark
+    public boolean applyQueuedInput(MidGame state) {
+        offerMovesThereAndBack(state.input);
+        return state.game.applyInput(state.input);
+    }
+
+    /** The same moves without publishing a snapshot, which shouldn't allocate. */
+    @Benchmark
+    public boolean drainQueuedInput(MidGame state) {
+        offerMovesThereAndBack(state.input);
+        return state.game.drainInput(state.input);
+    }
+
+    /** Leaves the piece where it started. */
+    private static void offerMovesThereAndBack(InputQueue input) {
+        input.offer(Move.LEFT, 0);
+        input.offer(Move.RIGHT, 0);
+        input.offer(Move.ROTATE, 0);
+        input.offer(Move.ROTATE, 0);
+        input.offer(Move.ROTATE, 0);
+        input.offer(Move.ROTATE, 0);
+    }
+
+    /** Includes putting the board back first, see {@link #refillBoard} for what that costs alone. */
+    @Benchmark
+    public int clearFullRowsFromBoard(FilledBoard state) {
+        refillBoard(state);
+        return state.game.clearFullRowsFromBoard();
+    }
+
+    @Benchmark
+    public GameCore refillBoard(FilledBoard state) {
+        for (int y = 0; y < GameCore.BOARD_H; y++) {
+            state.game.setRow(y, state.rows[y]);
+        }
+        return state.game;
+    }
+}
@@ -0,0 +1,85 @@
+package game;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RendererBenchmark {
+    private Renderer renderer;
+    private int[] lastFrame;
+    // Pairs of snapshots to draw in turn, so each frame has the same changes to draw
+    private GameSnapshot beforeFall;
+    private GameSnapshot afterFall;
+    private GameSnapshot otherGame;
+    private boolean flip;
+
+    private final FrameBuffer frame = new FrameBuffer();
+    private final int[] packed = new int[FrameBuffer.PACKED_LENGTH];
+
+    @Setup
+    public void setUp() {
+        GameCore game = GameCoreBenchmark.midGame(300);
+        beforeFall = game.getSnapshot();
+        game.move(Move.SOFT_DROP);
+        game.publishIfChanged();
+        afterFall = game.getSnapshot();
+        // Different enough that nearly every row & the score differ
+        otherGame = GameCoreBenchmark.midGame(600).getSnapshot();
+
+        renderer = new Renderer((f, release) -> {
+            if (lastFrame != null) {
+                release.accept(lastFrame);
+            }
+            lastFrame = f;
+        });
+        // Gets the first full redraw out of the way
+        renderer.render(beforeFall);
+
+        Random rng = new Random(GameCoreBenchmark.SEED);
+        for (int x = 0; x < FrameBuffer.DISPLAY_SHORT; x++) {
+            for (int y = 0; y < FrameBuffer.DISPLAY_LONG; y++) {
+                if (rng.nextBoolean()) {
+                    frame.setPixel(x, y);
+                }
+            }
+        }
+    }
+
+    /** A typical tick, where the active piece has moved down a row. */
+    @Benchmark
+    public int[] renderPieceMove() {
+        flip = !flip;
+        renderer.render(flip ? afterFall : beforeFall);
+        return lastFrame;
+    }
+
+    /** Worst case short of a full redraw, like after clearing rows near the bottom. */
+    @Benchmark
+    public int[] renderAllRows() {
+        flip = !flip;
+        renderer.render(flip ? otherGame : beforeFall);
+        return lastFrame;
+    }
+
+    @Benchmark
+    public int[] packFrame() {
+        frame.packInto(packed);
+        return packed;
+    }
+}
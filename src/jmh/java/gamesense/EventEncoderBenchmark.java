@@ -0,0 +1,49 @@
+package gamesense;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventEncoderBenchmark {
+    private static final List<String> LINE_CLEAR = List.of(GameSenseApi.SHORT_VIBRATE_EVENT);
+
+    private final EventEncoder encoder = new EventEncoder(GameSenseApi.ENGINE_GAME_ID, GameSenseApi.DISPLAY_EVENT,
+            GameSenseApi.SHORT_VIBRATE_EVENT, GameSenseApi.LONG_VIBRATE_EVENT, GameSenseApi.GRAND_VIBRATE_EVENT);
+    private final int[] frame = new int[GameSenseApi.IMAGE_DATA_LENGTH];
+
+    @Setup
+    public void setUp() {
+        // Mix of 1, 2 & 3 digit values
+        Random rng = new Random(4);
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = rng.nextInt(256);
+        }
+    }
+
+    @Benchmark
+    public int encodeDisplayEvent() {
+        return encoder.encodeDisplayEvent(frame);
+    }
+
+    @Benchmark
+    public int encodeBatch() {
+        return encoder.encodeBatch(LINE_CLEAR, frame);
+    }
+}
@@ -1,35 +1,23 @@
 import game.Vibrator;
-import gamesense.GameSenseApi;
+import gamesense.GameSenseDispatcher;
 
 class GameSenseVibrator implements Vibrator {
 
-    private interface Thrower {
-        void call() throws Exception;
-    }
-
-    private final GameSenseApi gameSenseApi;
+    private final GameSenseDispatcher dispatcher;
 
-    GameSenseVibrator(GameSenseApi gameSenseApi) {
-        this.gameSenseApi = gameSenseApi;
+    GameSenseVibrator(GameSenseDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
     }
 
+    // Just hands the vibration over, so the game tick never waits on the engine.
+    // Errors are reported by the dispatcher & are just vibration events being lost, so not a huge deal
     @Override
     public void doShortBuzz() {
-        ignoreExceptions(gameSenseApi::shortVibrate);
+        dispatcher.shortVibrate();
     }
 
     @Override
     public void doGrandBuzz() {
-        ignoreExceptions(gameSenseApi::grandVibrate);
-    }
-
-    // Just vibration events being lost, so not a huge deal
-    // If all events are being lost & the game should stop then a render will happen in a few milliseconds anyway which will throw
-    private static void ignoreExceptions(Thrower thrower) {
-        try {
-            thrower.call();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        dispatcher.grandVibrate();
     }
 }
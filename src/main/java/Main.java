@@ -1,14 +1,26 @@
 import game.GameManager;
 import gamesense.GameSenseApi;
+import gamesense.GameSenseDispatcher;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import metrics.MetricsServer;
 import org.jnativehook.GlobalScreen;
 import org.jnativehook.NativeHookException;
 
 class Main {
+    private static final String METRICS_PORT_PROPERTY = "tetris.metricsPort";
+    private static final int DEFAULT_METRICS_PORT = 9400;
 
+    /** Pass "unregister" to remove the game from the engine instead of playing. */
     public static void main(String[] args) throws NativeHookException, IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("unregister")) {
+            GameSenseApi gameSenseApi = new GameSenseApi();
+            gameSenseApi.initialise();
+            gameSenseApi.unregisterGame();
+            return;
+        }
+
         Logger.getLogger(GlobalScreen.class.getPackage().getName()).setLevel(Level.WARNING);
         try {
             GlobalScreen.registerNativeHook();
@@ -20,14 +32,39 @@ class Main {
             System.exit(1);
         }
 
+        MetricsServer metricsServer = null;
         try {
+            metricsServer = startMetricsServer();
             new Main().start();
         } finally {
             // To stop its thread from keeping the program alive
             GlobalScreen.unregisterNativeHook();
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
+    }
+
+    /**
+     * Returns null if turned off by setting the port to 0, or if it couldn't start (e.g. the port's taken), as the game
+     * can be played without it.
+     */
+    private static MetricsServer startMetricsServer() {
+        int port = Integer.getInteger(METRICS_PORT_PROPERTY, DEFAULT_METRICS_PORT);
+        if (port <= 0) {
+            return null;
+        }
+        try {
+            MetricsServer metricsServer = new MetricsServer(port);
+            metricsServer.start();
+            return metricsServer;
+        } catch (IOException e) {
+            System.err.println("Not serving metrics, couldn't listen on port " + port + ": " + e);
+            return null;
         }
     }
 
+    /** The game's left registered with the engine afterwards, so the next launch doesn't have to register it again. */
     private void start() throws IOException, InterruptedException {
         GameSenseApi gameSenseApi = new GameSenseApi();
         gameSenseApi.initialise();
@@ -36,19 +73,20 @@ class Main {
         try {
             gameSenseApi.longVibrate();
 
-            new GameManager(new GameSenseVibrator(gameSenseApi), imageData1 -> {
-                try {
-                    gameSenseApi.showImage(imageData1);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }).playNewGame();
+            GameSenseDispatcher dispatcher = new GameSenseDispatcher(gameSenseApi);
+            try {
+                new GameManager(new GameSenseVibrator(dispatcher), dispatcher::showImage, dispatcher::flush).playNewGame();
+            } finally {
+                dispatcher.close();
+            }
 
             gameSenseApi.longVibrate();
+            System.out.println("Frames sent: " + dispatcher.getFramesSent()
+                    + ", identical frames suppressed: " + dispatcher.getFramesSuppressed()
+                    + ", superseded frames dropped: " + dispatcher.getFramesDropped()
+                    + ", vibrations coalesced: " + dispatcher.getVibrationsCoalesced());
         } catch (Exception ex) {
             throw new RuntimeException("Uncaught error during running game", ex);
-        } finally {
-            gameSenseApi.unregisterGame();
         }
     }
 }
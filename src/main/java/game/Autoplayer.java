@@ -0,0 +1,310 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import metrics.Histogram;
+import metrics.Metrics;
+
+/**
+ * Plays by itself. When a piece appears, every placement it can reach is scored by how the board would look after it
+ * (holes, height, bumpiness & lines cleared), looking ahead at what the unknown pieces after it could do. It then makes
+ * the moves a player would (clicks to shift, scrolls to rotate & drop) to get the piece there, a few each tick.
+ */
+final class Autoplayer implements Controller {
+    // Commonly used weights for these features, tuned by playing lots of games
+    private static final double HEIGHT_WEIGHT = -0.510066;
+    private static final double LINES_WEIGHT = 0.760666;
+    private static final double HOLES_WEIGHT = -0.35663;
+    private static final double BUMPINESS_WEIGHT = -0.184483;
+    private static final double GAME_OVER_VALUE = -1e9;
+    // Past the piece being placed, only the best few placements by the board alone are looked further ahead from
+    private static final int BEAM_WIDTH = 5;
+    private static final int MAX_PLACEMENTS = Pieces.ROTATIONS * GameCore.BOARD_W;
+
+    private static final Histogram SEARCH_DURATION = Metrics.histogram("tetris_autoplayer_search_seconds",
+            "Time the autoplayer spent choosing where to put each piece");
+
+    private final ForkJoinPool pool;
+    private final int lookahead;
+    private final int movesPerTick;
+
+    private int plannedFor = -1;
+    private int targetRotation;
+    private int targetX;
+
+    /**
+     * @param pool         to search each placement in parallel, or null to search on the game's thread
+     * @param lookahead    how many pieces after the current one to think about
+     * @param movesPerTick most moves to make in one tick, so it can be slowed down to watch
+     */
+    Autoplayer(ForkJoinPool pool, int lookahead, int movesPerTick) {
+        this.pool = pool;
+        this.lookahead = lookahead;
+        this.movesPerTick = movesPerTick;
+    }
+
+    @Override
+    public void playTick(GameCore game, long tick) {
+        if (game.getPiecesSpawned() != plannedFor) {
+            plannedFor = game.getPiecesSpawned();
+            long start = System.nanoTime();
+            choosePlacement(game);
+            SEARCH_DURATION.recordSince(start);
+        }
+        for (int i = 0; i < movesPerTick; i++) {
+            if (!game.move(nextMove(game))) {
+                break;
+            }
+        }
+    }
+
+    /** Rotates first, dropping until there's room to if need be, then shifts across & drops. */
+    private Move nextMove(GameCore game) {
+        if (game.getActiveRotation() != targetRotation) {
+            int rotated = Pieces.nextRotation(game.getActiveRotation());
+            return game.isLegalMove(rotated, game.getActiveX(), game.getActiveY()) ? Move.ROTATE : Move.SOFT_DROP;
+        } else if (game.getActiveX() > targetX) {
+            return Move.LEFT;
+        } else if (game.getActiveX() < targetX) {
+            return Move.RIGHT;
+        }
+        return Move.SOFT_DROP;
+    }
+
+    private void choosePlacement(GameCore game) {
+        int[] rows = new int[GameCore.BOARD_H];
+        game.copyRows(rows);
+        int piece = game.getActivePieceId();
+
+        Search search = new Search(lookahead);
+        int count = search.placements(rows, piece, game.getActiveRotation(), game.getActiveX(), game.getActiveY(), 0);
+        // Stays put if there's nowhere to go
+        targetRotation = game.getActiveRotation();
+        targetX = game.getActiveX();
+        if (count == 0) {
+            return;
+        }
+
+        // Looking ahead is costly, so only from the placements that look best on their own
+        int[] candidates = search.bestPlacements(rows, piece, count, lookahead == 0 ? count : BEAM_WIDTH);
+        double[] values = new double[candidates.length];
+        if (pool == null || candidates.length == 1) {
+            for (int c = 0; c < candidates.length; c++) {
+                int i = candidates[c];
+                values[c] = search.value(rows, piece, search.rotations[0][i], search.xs[0][i], search.ys[0][i], 0);
+            }
+        } else {
+            List<RecursiveTask<Double>> tasks = new ArrayList<>(candidates.length);
+            for (int i : candidates) {
+                int rotation = search.rotations[0][i];
+                int x = search.xs[0][i];
+                int y = search.ys[0][i];
+                tasks.add(new RecursiveTask<Double>() {
+                    @Override
+                    protected Double compute() {
+                        return new Search(lookahead).value(rows, piece, rotation, x, y, 0);
+                    }
+                });
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            for (int c = 0; c < candidates.length; c++) {
+                values[c] = tasks.get(c).join();
+            }
+        }
+
+        int best = 0;
+        for (int c = 1; c < candidates.length; c++) {
+            if (values[c] > values[best]) {
+                best = c;
+            }
+        }
+        best = candidates[best];
+        targetRotation = search.rotations[0][best];
+        targetX = search.xs[0][best];
+    }
+
+    /** Scratch space for searching from one placement, reused throughout so searching doesn't allocate. */
+    private static final class Search {
+        private final int lookahead;
+        // Per depth: the board after placing a piece, & the placements found on the board before it
+        private final int[][] boards;
+        final int[][] rotations;
+        final int[][] xs;
+        final int[][] ys;
+        private final double[][] quickValues;
+        private final int[] heights = new int[GameCore.BOARD_W];
+
+        Search(int lookahead) {
+            this.lookahead = lookahead;
+            int depths = lookahead + 1;
+            boards = new int[depths][GameCore.BOARD_H];
+            rotations = new int[depths][MAX_PLACEMENTS];
+            xs = new int[depths][MAX_PLACEMENTS];
+            ys = new int[depths][MAX_PLACEMENTS];
+            quickValues = new double[depths][MAX_PLACEMENTS];
+        }
+
+        /**
+         * Finds where the piece can land by rotating (dropping first until there's room to), shifting across & then
+         * dropping straight down, storing them at the given depth. Returns how many there are.
+         */
+        int placements(int[] rows, int piece, int rotation, int x, int y, int depth) {
+            int count = 0;
+            for (int turns = 0; turns < Pieces.ROTATIONS; turns++) {
+                if (turns > 0) {
+                    int previous = rotation;
+                    rotation = Pieces.nextRotation(rotation);
+                    // Pieces start at the very top, so usually have to drop a bit before they can turn
+                    while (!GameCore.fits(rows, piece, rotation, x, y) && GameCore.fits(rows, piece, previous, x, y + 1)) {
+                        y++;
+                    }
+                    if (!GameCore.fits(rows, piece, rotation, x, y)) {
+                        break;
+                    }
+                }
+                if (!isRepeatRotation(piece, rotation, turns)) {
+                    for (int dx = 0; GameCore.fits(rows, piece, rotation, x + dx, y); dx--) {
+                        count = addLanding(rows, piece, rotation, x + dx, y, depth, count);
+                    }
+                    for (int dx = 1; GameCore.fits(rows, piece, rotation, x + dx, y); dx++) {
+                        count = addLanding(rows, piece, rotation, x + dx, y, depth, count);
+                    }
+                }
+            }
+            return count;
+        }
+
+        /** Whether this rotation looks the same as one already tried, e.g. for the square. */
+        private static boolean isRepeatRotation(int piece, int rotation, int turns) {
+            int earlier = rotation;
+            for (int i = 0; i < turns; i++) {
+                earlier = (earlier + Pieces.ROTATIONS - 1) % Pieces.ROTATIONS;
+                boolean same = Pieces.minX(piece, earlier) == Pieces.minX(piece, rotation)
+                        && Pieces.minY(piece, earlier) == Pieces.minY(piece, rotation);
+                for (int ty = 0; same && ty < Pieces.ROTATIONS; ty++) {
+                    same = Pieces.rowMask(piece, earlier, ty) == Pieces.rowMask(piece, rotation, ty);
+                }
+                if (same) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int addLanding(int[] rows, int piece, int rotation, int x, int y, int depth, int count) {
+            while (GameCore.fits(rows, piece, rotation, x, y + 1)) {
+                y++;
+            }
+            rotations[depth][count] = rotation;
+            xs[depth][count] = x;
+            ys[depth][count] = y;
+            return count + 1;
+        }
+
+        /** Indexes of up to the given number of the depth 0 placements that look best on their own, best first. */
+        int[] bestPlacements(int[] rows, int piece, int count, int most) {
+            for (int i = 0; i < count; i++) {
+                int lines = place(rows, piece, rotations[0][i], xs[0][i], ys[0][i], boards[0]);
+                quickValues[0][i] = LINES_WEIGHT * lines + boardValue(boards[0]);
+            }
+            int[] best = new int[Math.min(most, count)];
+            for (int b = 0; b < best.length; b++) {
+                best[b] = takeBest(quickValues[0], count);
+            }
+            return best;
+        }
+
+        /** How good placing the piece there is, including what's expected of the pieces after it. */
+        double value(int[] rows, int piece, int rotation, int x, int y, int depth) {
+            int[] after = boards[depth];
+            int lines = place(rows, piece, rotation, x, y, after);
+            double value = LINES_WEIGHT * lines;
+            if (depth == lookahead) {
+                return value + boardValue(after);
+            }
+
+            // Any piece is as likely as any other to come next
+            double expected = 0;
+            int next = depth + 1;
+            for (int nextPiece = 0; nextPiece < Pieces.COUNT; nextPiece++) {
+                int count = placements(after, nextPiece, 0, Pieces.SPAWN_X, Pieces.spawnY(nextPiece), next);
+                if (count == 0) {
+                    expected += GAME_OVER_VALUE;
+                    continue;
+                }
+                for (int i = 0; i < count; i++) {
+                    int nextLines = place(after, nextPiece, rotations[next][i], xs[next][i], ys[next][i], boards[next]);
+                    quickValues[next][i] = LINES_WEIGHT * nextLines + boardValue(boards[next]);
+                }
+                double best = Double.NEGATIVE_INFINITY;
+                for (int beam = 0; beam < BEAM_WIDTH && beam < count; beam++) {
+                    int i = takeBest(quickValues[next], count);
+                    best = Math.max(best, value(after, nextPiece, rotations[next][i], xs[next][i], ys[next][i], next));
+                }
+                expected += best;
+            }
+            return value + expected / Pieces.COUNT;
+        }
+
+        /** Index of the highest value, which is then knocked out so the next call finds the one after. */
+        private static int takeBest(double[] values, int count) {
+            int best = 0;
+            for (int i = 1; i < count; i++) {
+                if (values[i] > values[best]) {
+                    best = i;
+                }
+            }
+            values[best] = Double.NEGATIVE_INFINITY;
+            return best;
+        }
+
+        /** Copies the board with the piece landed into it & full rows cleared, returning how many were cleared. */
+        private static int place(int[] rows, int piece, int rotation, int x, int y, int[] into) {
+            System.arraycopy(rows, 0, into, 0, GameCore.BOARD_H);
+            for (int ty = Pieces.minY(piece, rotation); ty <= Pieces.maxY(piece, rotation); ty++) {
+                into[y + ty] |= Pieces.rowMask(piece, rotation, ty) << (x + GameCore.ROW_PAD);
+            }
+            int writeRow = GameCore.BOARD_H - 1;
+            for (int readRow = GameCore.BOARD_H - 1; readRow >= 0; readRow--) {
+                if (into[readRow] != GameCore.FULL_ROW) {
+                    into[writeRow--] = into[readRow];
+                }
+            }
+            int cleared = writeRow + 1;
+            for (int row = 0; row < cleared; row++) {
+                into[row] = GameCore.EMPTY_ROW;
+            }
+            return cleared;
+        }
+
+        private double boardValue(int[] rows) {
+            int covered = 0;
+            int holes = 0;
+            for (int y = 0; y < GameCore.BOARD_H; y++) {
+                int cells = (rows[y] >>> GameCore.ROW_PAD) & GameCore.ROW_CELLS;
+                // Empty cells with something above them
+                holes += Integer.bitCount(covered & ~cells);
+                for (int newlyCovered = cells & ~covered; newlyCovered != 0; newlyCovered &= newlyCovered - 1) {
+                    heights[Integer.numberOfTrailingZeros(newlyCovered)] = GameCore.BOARD_H - y;
+                }
+                covered |= cells;
+            }
+
+            int totalHeight = 0;
+            int bumpiness = 0;
+            for (int x = 0; x < GameCore.BOARD_W; x++) {
+                if ((covered & (1 << x)) == 0) {
+                    heights[x] = 0;
+                }
+                totalHeight += heights[x];
+                if (x > 0) {
+                    bumpiness += Math.abs(heights[x] - heights[x - 1]);
+                }
+            }
+            return HEIGHT_WEIGHT * totalHeight + HOLES_WEIGHT * holes + BUMPINESS_WEIGHT * bumpiness;
+        }
+    }
+}
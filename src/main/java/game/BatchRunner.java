@@ -0,0 +1,177 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongFunction;
+
+/**
+ * Plays lots of headless games across every core, for seeing how rule & gameplay changes play out without a mouse.
+ * Game i uses seed (firstSeed + i), so any game in a batch can be played again on its own.
+ */
+public final class BatchRunner {
+    private static final int DEFAULT_GAMES = 100_000;
+    // About 18 hours of play at 15 ticks a second
+    private static final long DEFAULT_MAX_TICKS = 1_000_000;
+    // Few enough that the work spreads evenly, while still worth forking for
+    private static final int GAMES_PER_TASK = 64;
+
+    private final LongFunction<Controller> controllers;
+    private final long maxTicks;
+
+    /** @param controllers makes the controller for the game with the given seed */
+    BatchRunner(LongFunction<Controller> controllers, long maxTicks) {
+        this.controllers = controllers;
+        this.maxTicks = maxTicks;
+    }
+
+    /** Usage: BatchRunner [games] [idle|random|auto] [first seed] [max ticks per game] */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+        String controller = args.length > 1 ? args[1] : "random";
+        long firstSeed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        long maxTicks = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_MAX_TICKS;
+
+        BatchRunner runner = new BatchRunner(controllerNamed(controller), maxTicks);
+        long start = System.nanoTime();
+        Results results = runner.run(firstSeed, games);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Played %d games (%s) in %.1fs, %.0f games/s%n",
+                games, controller, seconds, games / seconds);
+        System.out.print(results.describe());
+    }
+
+    static LongFunction<Controller> controllerNamed(String name) {
+        switch (name) {
+            case "idle": return seed -> Controller.idle();
+            case "random": return Controller::random;
+            // Games are already spread across cores, so each searches on its own thread. Without lookahead, as
+            // these games can go on for a very long time
+            case "auto": return seed -> new Autoplayer(null, 0, Integer.MAX_VALUE);
+        }
+        throw new IllegalArgumentException("Unknown controller: " + name);
+    }
+
+    Results run(long firstSeed, int games) {
+        Results results = new Results(games);
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new PlayGames(controllers, maxTicks, results, firstSeed, 0, games));
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    private static final class PlayGames extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final LongFunction<Controller> controllers;
+        private final long maxTicks;
+        private final Results results;
+        private final long firstSeed;
+        private final int from;
+        private final int to;
+
+        PlayGames(LongFunction<Controller> controllers, long maxTicks, Results results, long firstSeed, int from, int to) {
+            this.controllers = controllers;
+            this.maxTicks = maxTicks;
+            this.results = results;
+            this.firstSeed = firstSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    long seed = firstSeed + i;
+                    results.record(i, new HeadlessGame(seed, controllers.apply(seed)).play(maxTicks));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PlayGames(controllers, maxTicks, results, firstSeed, from, mid),
+                    new PlayGames(controllers, maxTicks, results, firstSeed, mid, to));
+        }
+    }
+
+    /** Every game's outcome, each written by whichever task played it. */
+    static final class Results {
+        final int[] scores;
+        final int[] levels;
+        final int[] rowsCleared;
+        final long[] ticks;
+        private final boolean[] finished;
+
+        Results(int games) {
+            scores = new int[games];
+            levels = new int[games];
+            rowsCleared = new int[games];
+            ticks = new long[games];
+            finished = new boolean[games];
+        }
+
+        void record(int game, GameResult result) {
+            scores[game] = result.score;
+            levels[game] = result.level;
+            rowsCleared[game] = result.rowsCleared;
+            ticks[game] = result.ticks;
+            finished[game] = result.finished;
+        }
+
+        int unfinishedGames() {
+            int unfinished = 0;
+            for (boolean f : finished) {
+                unfinished += f ? 0 : 1;
+            }
+            return unfinished;
+        }
+
+        String describe() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(distribution("score", Arrays.stream(scores).asLongStream().toArray()));
+            sb.append(distribution("lines", Arrays.stream(rowsCleared).asLongStream().toArray()));
+            sb.append(distribution("level", Arrays.stream(levels).asLongStream().toArray()));
+            sb.append(distribution("ticks", ticks.clone()));
+
+            int[] gamesAtLevel = new int[GameCore.MAX_LEVEL + 1];
+            for (int level : levels) {
+                gamesAtLevel[level]++;
+            }
+            sb.append("games ending at each level:");
+            for (int level = 0; level < gamesAtLevel.length; level++) {
+                if (gamesAtLevel[level] > 0) {
+                    sb.append(' ').append(level).append('=').append(gamesAtLevel[level]);
+                }
+            }
+            sb.append('\n');
+
+            int unfinished = unfinishedGames();
+            if (unfinished > 0) {
+                sb.append(unfinished).append(" games were stopped before they were over\n");
+            }
+            return sb.toString();
+        }
+
+        /** Sorts the values. */
+        private static String distribution(String name, long[] values) {
+            if (values.length == 0) {
+                return name + ": no games\n";
+            }
+            Arrays.sort(values);
+            double mean = Arrays.stream(values).average().orElse(0);
+            return String.format(Locale.ROOT, "%s: mean %.1f | min %d | p50 %d | p90 %d | p99 %d | max %d%n",
+                    name, mean, values[0], percentile(values, 50), percentile(values, 90), percentile(values, 99),
+                    values[values.length - 1]);
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            int i = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+            return sorted[Math.max(0, i)];
+        }
+    }
+}
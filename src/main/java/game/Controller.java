@@ -0,0 +1,39 @@
+package game;
+
+import java.util.Random;
+
+/** Makes the moves in a game played without a mouse, see {@link HeadlessGame}. */
+interface Controller {
+    /** Makes this tick's moves with {@link GameCore#move(Move)}. Only called while there's a piece falling. */
+    void playTick(GameCore game, long tick);
+
+    static Controller idle() {
+        return (game, tick) -> {
+        };
+    }
+
+    /** Makes each tick's moves from the script in turn, then nothing once it runs out. */
+    static Controller scripted(Move[][] movesPerTick) {
+        return (game, tick) -> {
+            if (tick < movesPerTick.length) {
+                for (Move move : movesPerTick[(int) tick]) {
+                    game.move(move);
+                }
+            }
+        };
+    }
+
+    /**
+     * Random moves on about a quarter of ticks, like someone clicking away without looking. Never hard drops, so the
+     * same seed plays the same game as before there were any.
+     */
+    static Controller random(long seed) {
+        Random rng = new Random(seed);
+        Move[] moves = {Move.LEFT, Move.RIGHT, Move.ROTATE, Move.SOFT_DROP};
+        return (game, tick) -> {
+            if (rng.nextInt(4) == 0) {
+                game.move(moves[rng.nextInt(moves.length)]);
+            }
+        };
+    }
+}
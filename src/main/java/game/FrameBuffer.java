@@ -0,0 +1,99 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Monochrome 128x36 frame kept in the bit layout the mouse display uses, so it can be packed for sending without
+ * transposing pixels one at a time.
+ *
+ * Drawing uses the same vertical (thin & tall) coordinates as the renderer: x across the 36 pixel short side and y
+ * down the 128 pixel long side. Each vertical column x is one horizontal line of the display, rotated 90 degrees
+ * anticlockwise, so a run of pixels down a column is a run of bits in a single line.
+ */
+final class FrameBuffer {
+    static final int DISPLAY_SHORT = 36;
+    static final int DISPLAY_LONG = 128;
+    static final int PACKED_LENGTH = DISPLAY_LONG * DISPLAY_SHORT / 8;
+
+    private static final int WORDS_PER_LINE = DISPLAY_LONG / Long.SIZE;
+
+    // Lines in display order (top to bottom), each as 2 longs with the leftmost pixel in the highest bit
+    private final long[] lines = new long[DISPLAY_SHORT * WORDS_PER_LINE];
+
+    void clear() {
+        Arrays.fill(lines, 0);
+    }
+
+    void setPixel(int x, int y) {
+        orColumn(x, y, Long.MIN_VALUE);
+    }
+
+    /** Sets len (1 to 64) pixels down column x, starting at y. */
+    void fillSpan(int x, int y, int len) {
+        orColumn(x, y, -1L << (Long.SIZE - len));
+    }
+
+    /**
+     * ORs up to 64 pixels into column x, starting at y. The highest bit of {@code bits} is the pixel at y, the next
+     * highest is y + 1 and so on. Pixels past the bottom of the display are dropped.
+     */
+    void orColumn(int x, int y, long bits) {
+        int word = lineStart(x) + (y >>> 6);
+        int offset = y & (Long.SIZE - 1);
+        lines[word] |= bits >>> offset;
+        if (offset != 0 && (y >>> 6) + 1 < WORDS_PER_LINE) {
+            lines[word + 1] |= bits << (Long.SIZE - offset);
+        }
+    }
+
+    /**
+     * Like {@link #orColumn(int, int, long)}, except pixels covered by {@code mask} are replaced with those in
+     * {@code bits} rather than added to.
+     */
+    void writeColumn(int x, int y, long bits, long mask) {
+        assert (bits & ~mask) == 0;
+        int word = lineStart(x) + (y >>> 6);
+        int offset = y & (Long.SIZE - 1);
+        lines[word] = (lines[word] & ~(mask >>> offset)) | bits >>> offset;
+        if (offset != 0 && (y >>> 6) + 1 < WORDS_PER_LINE) {
+            int shift = Long.SIZE - offset;
+            lines[word + 1] = (lines[word + 1] & ~(mask << shift)) | bits << shift;
+        }
+    }
+
+    /** Replaces rows y to y + height - 1 of every column with those from the other frame. */
+    void copyRegion(FrameBuffer other, int y, int height) {
+        for (int w = 0; w < WORDS_PER_LINE; w++) {
+            int start = Math.max(y - w * Long.SIZE, 0);
+            int end = Math.min(y + height - w * Long.SIZE, Long.SIZE);
+            if (start >= end) {
+                continue;
+            }
+            long mask = (-1L >>> start) & ~(end == Long.SIZE ? 0 : -1L >>> end);
+            for (int i = w; i < lines.length; i += WORDS_PER_LINE) {
+                lines[i] = (lines[i] & ~mask) | (other.lines[i] & mask);
+            }
+        }
+    }
+
+    boolean getPixel(int x, int y) {
+        int word = lineStart(x) + (y >>> 6);
+        return (lines[word] << (y & (Long.SIZE - 1))) < 0;
+    }
+
+    /** Writes the frame as one byte per int, in the order GameSense wants for image data. */
+    void packInto(int[] out) {
+        assert out.length == PACKED_LENGTH;
+        int i = 0;
+        for (long word : lines) {
+            for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+                out[i++] = (int) (word >>> shift) & 0xFF;
+            }
+        }
+    }
+
+    private static int lineStart(int x) {
+        // Rotating the vertical grid 90 anticlockwise to show on horizontal screen (short and wide)
+        return (DISPLAY_SHORT - x - 1) * WORDS_PER_LINE;
+    }
+}
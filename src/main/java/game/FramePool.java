@@ -0,0 +1,54 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import metrics.Counter;
+import metrics.Metrics;
+
+/**
+ * A few frame buffers for a {@link Renderer} to lend out to its {@link FrameSink} in turn. Only the render thread
+ * acquires them, but they can be released from any thread.
+ *
+ * If they're all still lent out, a new buffer is made rather than holding up the game. It's not kept, so the pool
+ * never grows, but it's counted so a sink holding on to too many frames shows up.
+ */
+final class FramePool {
+    private static final Counter BUFFERS_ALLOCATED = Metrics.counter("tetris_frame_buffers_allocated_total",
+            "Frames drawn into a new buffer because every pooled one was still in use");
+
+    private final int[][] buffers;
+    // 1 while lent out, published by release to whichever thread acquires it next
+    private final AtomicIntegerArray lent;
+    // Where to start looking for a free buffer, so they're used in turn. Only used by the render thread
+    private int next = 0;
+
+    FramePool(int size) {
+        buffers = new int[size][FrameBuffer.PACKED_LENGTH];
+        lent = new AtomicIntegerArray(size);
+    }
+
+    /** Returns a buffer to draw a frame into, to be lent out & then passed to {@link #release(int[])}. */
+    int[] acquire() {
+        for (int i = 0; i < buffers.length; i++) {
+            int slot = (next + i) % buffers.length;
+            if (lent.get(slot) == 0 && lent.compareAndSet(slot, 0, 1)) {
+                next = (slot + 1) % buffers.length;
+                return buffers[slot];
+            }
+        }
+        BUFFERS_ALLOCATED.increment();
+        return new int[FrameBuffer.PACKED_LENGTH];
+    }
+
+    /** Can be called from any thread. */
+    void release(int[] buffer) {
+        for (int slot = 0; slot < buffers.length; slot++) {
+            if (buffers[slot] == buffer) {
+                if (lent.getAndSet(slot, 0) == 0) {
+                    throw new IllegalStateException("Frame buffer released twice");
+                }
+                return;
+            }
+        }
+        // One made when the pool ran out, which is left for the GC
+    }
+}
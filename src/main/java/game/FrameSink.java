@@ -0,0 +1,25 @@
+package game;
+
+import java.util.function.Consumer;
+
+/**
+ * Where a {@link Renderer}'s frames go. Frames are only lent to the sink: each is one of a few buffers the renderer
+ * draws into again once it's handed back, so drawing doesn't make garbage.
+ */
+@FunctionalInterface
+public interface FrameSink {
+    /**
+     * Takes a frame, packed as GameSense image data. It mustn't be changed, and must be handed back by passing it to
+     * {@code release} once the sink's done with it, which can be later & from any thread. Nothing else may use the
+     * frame after that.
+     */
+    void accept(int[] frame, Consumer<int[]> release);
+
+    /** For sinks done with each frame as soon as they're given it, e.g. because they copy it. */
+    static FrameSink copying(Consumer<int[]> sink) {
+        return (frame, release) -> {
+            sink.accept(frame);
+            release.accept(frame);
+        };
+    }
+}
@@ -5,77 +5,135 @@ import java.util.Random;
 
 class GameCore {
 
-    // First pair are the rotate space of the shape, subsequent pairs are the initial tiles positions in the space
-    private static final int [][][] PIECES = {
-            // Line
-            { {4, 4}, {0, 1}, {1, 1}, {2, 1}, {3, 1} },
-            // Square
-            { {2, 2}, {0, 0}, {1, 0}, {0, 1}, {1, 1} },
-            // Ls
-            { {3, 3}, {0, 0}, {0, 1}, {1, 1}, {2, 1} },
-            { {3, 3}, {0, 1}, {1, 1}, {2, 1}, {0, 2} },
-            // Zs
-            { {3, 3}, {0, 1}, {1, 1}, {1, 0}, {2, 0} },
-            { {3, 3}, {0, 0}, {1, 0}, {1, 1}, {2, 1} },
-            // T
-            { {3, 3}, {1, 0}, {0, 1}, {1, 1}, {2, 1} }
-    };
-
     public static final int BOARD_W = 10;
     public static final int BOARD_H = 20;
 
+    // Each board row is an int with one bit per column, with bit (x + ROW_PAD) for column x. All bits outside the
+    // playfield are permanently set to act as walls, so a full row is simply one with every bit set
+    static final int ROW_PAD = 4;
+    static final int ROW_CELLS = (1 << BOARD_W) - 1;
+    static final int EMPTY_ROW = ~(ROW_CELLS << ROW_PAD);
+    static final int FULL_ROW = ~0;
+
+    private static final int NO_PIECE = -1;
+
     private static final int INITIAL_FALL_DELAY = 11;
-    private static final int MAX_LEVEL = INITIAL_FALL_DELAY - 1;
+    static final int MAX_LEVEL = INITIAL_FALL_DELAY - 1;
 
-    private final Random rng = new Random();
+    private final long seed;
+    private final Random rng;
     private final Vibrator vibrator;
 
-    // [0, 0] is top left corner
-    private boolean[][] board = new boolean[BOARD_W][BOARD_H];
-    private boolean[][] active = null;
+    // Row 0 is the top of the board
+    private final int[] rows = new int[BOARD_H];
+    // Row of the highest landed tile in each column, or BOARD_H if it's empty. Kept up to date as pieces land & rows
+    // clear, so finding where the active piece would land is a lookup rather than a collision check per row
+    private final int[] columnTops = new int[BOARD_W];
+    private int activePiece = NO_PIECE;
+    private int activeRotation;
     private int activeX;
     private int activeY;
+    private int piecesSpawned = 0;
+    // Set once a piece can't be placed, so the game stays over
+    private boolean gameOver = false;
 
     private int fallDelay = INITIAL_FALL_DELAY;
     private int score = 0;
     private int level = 0;
     private int rowsCleared = 0;
     private int rowsSoftDropped = 0;
+    // Set once the active piece is hard dropped, so nothing can move it again before it lands
+    private boolean hardDropped = false;
+
+    // Latest state for reading from other threads, replaced at the end of anything that changes what's shown
+    private volatile GameSnapshot snapshot;
+    private long snapshotVersion = 0;
+    private boolean changedSinceSnapshot = false;
+
+    // Created once so draining input doesn't allocate
+    private boolean movedDuringDrain;
+    // Null unless recording
+    private ReplayRecorder recorder;
+    private final InputQueue.Handler moveHandler = (move, timeNanos) -> movedDuringDrain |= move(move);
 
     public GameCore(Vibrator vibrator) {
+        this(vibrator, new Random().nextLong());
+    }
+
+    /** The same seed & inputs always play out the same game. */
+    GameCore(Vibrator vibrator, long seed) {
         this.vibrator = vibrator;
+        this.seed = seed;
+        this.rng = new Random(seed);
+        Arrays.fill(rows, EMPTY_ROW);
+        Arrays.fill(columnTops, BOARD_H);
+        snapshot = new GameSnapshot(snapshotVersion, this);
     }
 
+    /** Applies the counts of each move in a fixed order: all lefts, then rights, rotations & drops. */
     public TickResult tick(NewUserInput input) {
-        boolean renderChange = false;
-        if (active == null) {
-            boolean canPlace = placeNewActivePiece();
-            renderChange = true;
+        boolean spawned = activePiece == NO_PIECE;
+        if (gameOver || spawned && !placeNewActivePiece()) {
+            publishIfChanged();
+            return TickResult.GAME_OVER;
+        }
+        boolean renderChange = processUserInput(input) | spawned;
+        TickResult result = applyGravity(renderChange);
+        publishIfChanged();
+        return result;
+    }
 
-            if (!canPlace) {
-                return TickResult.GAME_OVER;
-            }
+    /** Drains the queued moves, applying them in the order they were made. */
+    public TickResult tick(InputQueue input) {
+        boolean spawned = activePiece == NO_PIECE;
+        if (gameOver || spawned && !placeNewActivePiece()) {
+            publishIfChanged();
+            return TickResult.GAME_OVER;
         }
+        boolean renderChange = drainInput(input) | spawned;
+        TickResult result = applyGravity(renderChange);
+        publishIfChanged();
+        return result;
+    }
 
-        renderChange |= processUserInput(input);
+    /**
+     * Replaces the snapshot if anything shown has changed since the last one, including moves made since then by
+     * calling {@link #move(Move)} directly.
+     */
+    void publishIfChanged() {
+        if (changedSinceSnapshot) {
+            snapshot = new GameSnapshot(++snapshotVersion, this);
+            changedSinceSnapshot = false;
+        }
+    }
 
+    private TickResult applyGravity(boolean renderChange) {
+        if (recorder != null) {
+            // Every move before gravity belongs to this tick
+            recorder.endTick();
+        }
         fallDelay--;
         if (fallDelay > 0) {
             return renderChange ? TickResult.VISUAL_CHANGE : TickResult.RUNNING;
         }
+        changedSinceSnapshot = true;
 
-        boolean pieceLands = !isLegalMove(active, activeX, activeY + 1);
+        boolean pieceLands = !isLegalMove(activeRotation, activeX, activeY + 1);
         if (pieceLands) {
-            for (int tx = 0; tx < active.length; tx++) {
-                for (int ty = 0; ty < active[0].length; ty++) {
-                    if (active[tx][ty]) {
-                        board[activeX + tx][activeY + ty] = true;
-                    }
-                }
+            boolean filledRow = false;
+            for (int ty = Pieces.minY(activePiece, activeRotation); ty <= Pieces.maxY(activePiece, activeRotation); ty++) {
+                rows[activeY + ty] |= Pieces.rowMask(activePiece, activeRotation, ty) << (activeX + ROW_PAD);
+                filledRow |= rows[activeY + ty] == FULL_ROW;
             }
-            active = null;
+            for (int tx = Pieces.minX(activePiece, activeRotation); tx <= Pieces.maxX(activePiece, activeRotation); tx++) {
+                int top = activeY + Pieces.topY(activePiece, activeRotation, tx);
+                columnTops[activeX + tx] = Math.min(columnTops[activeX + tx], top);
+            }
+            activePiece = NO_PIECE;
+            hardDropped = false;
 
-            int rowsRemoved = clearFullRowsFromBoard();
+            // Only the rows the piece landed in can have just filled up
+            int rowsRemoved = filledRow ? clearFullRowsFromBoard() : 0;
             vibrateForRowsRemoved(rowsRemoved);
             rowsCleared += rowsRemoved;
             score += baseScoreForRowsRemoved(rowsRemoved) * (level + 1) + rowsSoftDropped;
@@ -88,47 +146,73 @@ class GameCore {
         return TickResult.VISUAL_CHANGE;
     }
 
-    private boolean placeNewActivePiece() {
-        assert active == null;
-
-        int[][] pieceData = PIECES[rng.nextInt(PIECES.length)];
-        // If top row(s) of active piece space are empty, then initial Y value must be higher to place at top of board
-        int initialY = Arrays.stream(pieceData)
-                .map(t -> t[1])
-                .min(Integer::compareTo)
-                .map(i -> -i)
-                .get();
-        active = new boolean[pieceData[0][0]][pieceData[0][1]];
-        for (int i = 1; i < pieceData.length; i++) {
-            int[] t = pieceData[i];
-            active[t[0]][t[1]] = true;
+    /**
+     * Applies queued moves straight away rather than on the next tick, leaving gravity to keep to the ticks. Only
+     * possible while there's an active piece, so check {@link #hasActivePiece()} first so the input isn't wasted.
+     *
+     * @return whether anything visible changed
+     */
+    public boolean applyInput(InputQueue input) {
+        boolean moved = drainInput(input);
+        publishIfChanged();
+        return moved;
+    }
+
+    /** Applies queued moves like {@link #applyInput}, leaving publishing a snapshot of them to the caller. */
+    boolean drainInput(InputQueue input) {
+        if (activePiece == NO_PIECE) {
+            return false;
         }
-        activeX = 3;
-        activeY = initialY;
-        return isLegalMove(active, activeX, activeY);
+        movedDuringDrain = false;
+        input.drainTo(moveHandler);
+        return movedDuringDrain;
+    }
+
+    /**
+     * Spawns the next piece if there isn't one falling, as the start of each tick does, so moves can be made before
+     * the tick. Returns false if there's no room for it, which ends the game.
+     */
+    boolean spawnPieceIfNeeded() {
+        return !gameOver && (activePiece != NO_PIECE || placeNewActivePiece());
+    }
+
+    private boolean placeNewActivePiece() {
+        assert activePiece == NO_PIECE;
+
+        activePiece = rng.nextInt(Pieces.COUNT);
+        activeRotation = 0;
+        activeX = Pieces.SPAWN_X;
+        activeY = Pieces.spawnY(activePiece);
+        piecesSpawned++;
+        changedSinceSnapshot = true;
+        gameOver = !isLegalMove(activeRotation, activeX, activeY);
+        return !gameOver;
     }
 
     private int currentFallDelay() {
         return INITIAL_FALL_DELAY - level;
     }
 
-    private boolean isLegalMove(boolean[][] tileSpace, int sx, int sy) {
-        for (int tx = 0; tx < tileSpace.length; tx++) {
-            for (int ty = 0; ty < tileSpace[0].length; ty++) {
-                if (!tileSpace[tx][ty]) {
-                    // No tile
-                    continue;
-                }
-                if (sx + tx < 0 || sx + tx >= BOARD_W) {
-                    // Horizontally out of bounds
-                    return false;
-                } else if (sy + ty < 0 || sy + ty >= BOARD_H) {
-                    // Vertically out of bounds
-                    return false;
-                } else if (board[sx + tx][sy + ty]) {
-                    // Colliding with landed tile
-                    return false;
-                }
+    /**
+     * Checks the active piece in the given rotation against the board with the top left corner of its space at (sx, sy).
+     * Pieces never get more than one column past a wall, so the shift into the padded row is never negative.
+     */
+    boolean isLegalMove(int rotation, int sx, int sy) {
+        return fits(rows, activePiece, rotation, sx, sy);
+    }
+
+    /** Checks a piece against any board laid out like {@link #rows}, as with {@link #isLegalMove}. */
+    static boolean fits(int[] rows, int piece, int rotation, int sx, int sy) {
+        int shift = sx + ROW_PAD;
+        for (int ty = Pieces.minY(piece, rotation); ty <= Pieces.maxY(piece, rotation); ty++) {
+            int y = sy + ty;
+            if (y < 0 || y >= BOARD_H) {
+                // Vertically out of bounds
+                return false;
+            }
+            if ((rows[y] & (Pieces.rowMask(piece, rotation, ty) << shift)) != 0) {
+                // Colliding with a wall or landed tile
+                return false;
             }
         }
         return true;
@@ -136,91 +220,139 @@ class GameCore {
 
     private boolean processUserInput(NewUserInput input) {
         boolean renderChange = false;
+        renderChange |= repeatMove(Move.LEFT, input.leftClicks);
+        renderChange |= repeatMove(Move.RIGHT, input.rightClicks);
+        renderChange |= repeatMove(Move.ROTATE, input.scrollUps);
+        renderChange |= repeatMove(Move.SOFT_DROP, input.scrollDowns);
+        return renderChange;
+    }
 
-        if (input.leftClicks > 0) {
-            for (int i = 0; i < input.leftClicks; i++) {
-                if (isLegalMove(active, activeX - 1, activeY)) {
-                    activeX--;
-                    renderChange = true;
-                } else {
-                    break;
-                }
+    /** Stops at the first move that can't be made, as the rest couldn't be either. */
+    private boolean repeatMove(Move move, int times) {
+        for (int i = 0; i < times; i++) {
+            if (!move(move)) {
+                return i > 0;
             }
         }
-        if (input.rightClicks > 0) {
-            for (int i = 0; i < input.rightClicks; i++) {
-                if (isLegalMove(active, activeX + 1, activeY)) {
-                    activeX++;
-                    renderChange = true;
-                } else {
-                    break;
-                }
-            }
+        return times > 0;
+    }
+
+    /**
+     * Moves the active piece if it can.
+     *
+     * @return whether the piece moved
+     */
+    boolean move(Move move) {
+        if (recorder != null) {
+            // Even moves that can't be made, as replaying them has to make them fail the same way
+            recorder.onMove(move);
         }
-        if (input.scrollUps > 0) {
-            for (int i = 0; i < input.scrollUps; i++) {
-                boolean[][] rotated = rotate(active);
-                if (isLegalMove(rotated, activeX, activeY)) {
-                    active = rotated;
-                    renderChange = true;
-                } else {
-                    break;
-                }
-            }
+        if (hardDropped) {
+            return false;
         }
-        if (input.scrollDowns > 0) {
-            for (int i = 0; i < input.scrollDowns; i++) {
-                if (isLegalMove(active, activeX, activeY + 1)) {
-                    activeY++;
-                    rowsSoftDropped++;
-                    renderChange = true;
-                } else {
-                    break;
-                }
-            }
+        if (move == Move.HARD_DROP) {
+            return hardDrop();
         }
-        return renderChange;
+        int rotation = activeRotation;
+        int x = activeX;
+        int y = activeY;
+        switch (move) {
+            case LEFT: x--; break;
+            case RIGHT: x++; break;
+            case ROTATE: rotation = Pieces.nextRotation(rotation); break;
+            case SOFT_DROP: y++; break;
+        }
+        if (!isLegalMove(rotation, x, y)) {
+            return false;
+        }
+        activeRotation = rotation;
+        activeX = x;
+        activeY = y;
+        changedSinceSnapshot = true;
+        if (move == Move.SOFT_DROP) {
+            rowsSoftDropped++;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the piece as far as it'll go & has it land on this tick's gravity, rather than after the rest of the fall
+     * delay. Any moves before then are ignored, so it lands where it was dropped. The rows dropped score the same as
+     * soft dropping them.
+     *
+     * Landing it straight away would spawn the next piece partway through a tick, so moves made before & during the
+     * tick would play out differently, which replays can't tell apart.
+     */
+    private boolean hardDrop() {
+        fallDelay = 1;
+        hardDropped = true;
+        int y = getLandingY();
+        if (y == activeY) {
+            return false;
+        }
+        rowsSoftDropped += y - activeY;
+        activeY = y;
+        changedSinceSnapshot = true;
+        return true;
     }
 
-    /** Rotates tiles 90 degrees clockwise in the given piece's space. */
-    private static boolean[][] rotate(boolean[][] given) {
-        assert given.length == given[0].length;
-        boolean[][] result = new boolean[given.length][given.length];
-        for (int x = 0; x < given.length; x++) {
-            for (int y = 0; y < given[0].length; y++) {
-                result[x][y] = given[y][given.length - x - 1];
+    /** Where the active piece would end up if dropped straight down, as its y. */
+    int getLandingY() {
+        int drop = BOARD_H;
+        for (int tx = Pieces.minX(activePiece, activeRotation); tx <= Pieces.maxX(activePiece, activeRotation); tx++) {
+            int bottom = activeY + Pieces.bottomY(activePiece, activeRotation, tx);
+            int top = columnTops[activeX + tx];
+            if (bottom >= top) {
+                // Tucked under an overhang, so the column's top says nothing about what's underneath
+                return stepDownToLanding();
             }
+            drop = Math.min(drop, top - bottom - 1);
         }
-        return result;
+        return activeY + drop;
     }
 
-    private int clearFullRowsFromBoard() {
-        boolean[][] newBoard = new boolean[BOARD_W][BOARD_H];
+    private int stepDownToLanding() {
+        int y = activeY;
+        while (isLegalMove(activeRotation, activeX, y + 1)) {
+            y++;
+        }
+        return y;
+    }
 
-        int readRow = BOARD_H - 1;
-        int writeRow = readRow;
+    /** Removes full rows by compacting the remaining rows down in place, returning how many were removed. */
+    int clearFullRowsFromBoard() {
+        int writeRow = BOARD_H - 1;
 
-        while (readRow >= 0) {
-            boolean full = true;
-            for (int x = 0; x < BOARD_W; x++) {
-                if (!board[x][readRow]) {
-                    full = false;
-                    break;
-                }
-            }
-            if (full) {
-                readRow--;
+        for (int readRow = BOARD_H - 1; readRow >= 0; readRow--) {
+            if (rows[readRow] == FULL_ROW) {
                 continue;
             }
-            for (int x = 0; x < BOARD_W; x++) {
-                newBoard[x][writeRow] = board[x][readRow];
-            }
-            readRow--;
+            rows[writeRow] = rows[readRow];
             writeRow--;
         }
 
-        board = newBoard;
-        return writeRow - readRow;
+        int removed = writeRow + 1;
+        for (int y = 0; y < removed; y++) {
+            rows[y] = EMPTY_ROW;
+        }
+        if (removed > 0) {
+            findColumnTops();
+        }
+        return removed;
+    }
+
+    /** Works out every column's top from scratch, going down the rows until each column's had a tile. */
+    private void findColumnTops() {
+        Arrays.fill(columnTops, BOARD_H);
+        int seen = 0;
+        for (int y = 0; y < BOARD_H && seen != ROW_CELLS; y++) {
+            int newTops = getRow(y) & ~seen;
+            seen |= newTops;
+            while (newTops != 0) {
+                columnTops[Integer.numberOfTrailingZeros(newTops)] = y;
+                newTops &= newTops - 1;
+            }
+        }
     }
 
     private void vibrateForRowsRemoved(int numRemoved) {
@@ -242,12 +374,57 @@ class GameCore {
         throw new AssertionError("Unexpected number of rows removed: " + numRemoved);
     }
 
-    public boolean[][] getBoard() {
-        return board;
+    /** Records every move & tick from now on, which has to be from the start for the game to replay the same. */
+    void recordTo(ReplayRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * The game as of the end of the last tick or input applied, for reading from any thread. Everything else here is
+     * only for the thread ticking the game.
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** Copies the landed tiles in their padded form, see {@link #ROW_PAD}. */
+    void copyRows(int[] into) {
+        System.arraycopy(rows, 0, into, 0, BOARD_H);
+    }
+
+    /** Landed tiles in the given row, with bit x set for each filled column x. */
+    public int getRow(int y) {
+        return (rows[y] >>> ROW_PAD) & ROW_CELLS;
     }
 
-    public boolean[][] getActivePiece() {
-        return active;
+    /**
+     * Replaces the landed tiles in the given row, with bit x set for each filled column x. Only for setting up boards,
+     * so call {@link #publishIfChanged()} once done.
+     */
+    void setRow(int y, int cells) {
+        rows[y] = EMPTY_ROW | (cells & ROW_CELLS) << ROW_PAD;
+        findColumnTops();
+        changedSinceSnapshot = true;
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    boolean isGameOver() {
+        return gameOver;
+    }
+
+    public boolean hasActivePiece() {
+        return activePiece != NO_PIECE;
+    }
+
+    public int getActivePieceId() {
+        return activePiece;
+    }
+
+    public int getActiveRotation() {
+        return activeRotation;
     }
 
     public int getScore() {
@@ -265,4 +442,13 @@ class GameCore {
     public int getLevel() {
         return level;
     }
+
+    /** Counts the piece currently falling, so changes whenever a new one appears. */
+    int getPiecesSpawned() {
+        return piecesSpawned;
+    }
+
+    public int getRowsCleared() {
+        return rowsCleared;
+    }
 }
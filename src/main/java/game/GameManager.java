@@ -1,58 +1,175 @@
 package game;
 
-import java.util.function.Consumer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import metrics.Histogram;
+import metrics.Metrics;
 
 public class GameManager {
     private static final int TICKS_PER_SECOND = 15;
+    private static final String CATCH_UP_PROPERTY = "tetris.catchUp";
+    private static final String IMMEDIATE_INPUT_PROPERTY = "tetris.immediateInput";
+    private static final String REPLAY_DIR_PROPERTY = "tetris.replayDir";
+    private static final String DEMO_PROPERTY = "tetris.demo";
+    private static final String GHOST_PROPERTY = "tetris.ghost";
+    // Enough to see what it's doing, while still keeping up once pieces fall fast
+    private static final int DEMO_LOOKAHEAD = 2;
+    private static final int DEMO_MOVES_PER_TICK = 2;
+    private static final DateTimeFormatter REPLAY_NAME = DateTimeFormatter.ofPattern("'tetris-'yyyyMMdd-HHmmss'.replay'");
+
+    private static final Histogram TICK_DURATION = Metrics.histogram("tetris_tick_duration_seconds",
+            "Time spent in GameCore.tick");
 
     private final Vibrator vibrator;
-    private final Consumer<int[]> renderOut;
-    private final InputListener inputListener = new InputListener();
+    private final FrameSink renderOut;
+    private final Runnable endOfTick;
+    private final InputListener inputListener = new InputListener(this::wakeForInput);
+    private final TickClock clock;
+    private final TickScheduler.CatchUp catchUp;
+    private final boolean immediateInput;
+    // Plays in place of the mouse in demo mode, otherwise null
+    private final Controller autoplayer;
+    private volatile Thread gameThread;
+
+    /**
+     * @param endOfTick called once all of a tick's vibrations & frames have been handed over, so they can be sent
+     *                  together. Also called after input applied between ticks
+     */
+    public GameManager(Vibrator vibrator, FrameSink renderOut, Runnable endOfTick) {
+        this(vibrator, renderOut, endOfTick, TickClock.SYSTEM, catchUpFromProperty(),
+                Boolean.parseBoolean(System.getProperty(IMMEDIATE_INPUT_PROPERTY, "true")),
+                Boolean.getBoolean(DEMO_PROPERTY)
+                        ? new Autoplayer(ForkJoinPool.commonPool(), DEMO_LOOKAHEAD, DEMO_MOVES_PER_TICK)
+                        : null);
+    }
 
-    public GameManager(Vibrator vibrator, Consumer<int[]> renderOut) {
+    /**
+     * @param immediateInput apply input as soon as it arrives, rather than waiting for the next tick
+     * @param autoplayer     plays instead of the mouse, or null to play with the mouse
+     */
+    GameManager(Vibrator vibrator, FrameSink renderOut, Runnable endOfTick,
+                TickClock clock, TickScheduler.CatchUp catchUp, boolean immediateInput, Controller autoplayer) {
         this.vibrator = vibrator;
         this.renderOut = renderOut;
+        this.endOfTick = endOfTick;
+        this.clock = clock;
+        this.catchUp = catchUp;
+        this.immediateInput = immediateInput;
+        this.autoplayer = autoplayer;
+    }
+
+    /** Skipping by default, so a hiccup doesn't make pieces suddenly drop several rows at once. */
+    private static TickScheduler.CatchUp catchUpFromProperty() {
+        String catchUp = System.getProperty(CATCH_UP_PROPERTY, TickScheduler.CatchUp.SKIP.name());
+        return TickScheduler.CatchUp.valueOf(catchUp.toUpperCase(Locale.ROOT));
     }
 
     public void playNewGame() {
         GameCore activeGame = new GameCore(vibrator);
-        inputListener.listenToMouseEvents();
+        ReplayRecorder recorder = startRecording(activeGame);
+        if (autoplayer == null) {
+            inputListener.listenToMouseEvents();
+        }
         try {
             runGame(activeGame);
+            if (recorder != null) {
+                recorder.finish(activeGame);
+            }
         } finally {
             inputListener.stopListeningToMouseEvents();
+            stopRecording(recorder);
         }
     }
 
-    private void runGame(GameCore activeGame) {
-        long startTime = System.currentTimeMillis();
-        long tick = 0;
-        int tickTime = 1000 / TICKS_PER_SECOND; // Roughly
+    /** Returns null unless a directory to keep replays in has been set. */
+    private static ReplayRecorder startRecording(GameCore game) {
+        String dir = System.getProperty(REPLAY_DIR_PROPERTY);
+        if (dir == null) {
+            return null;
+        }
+        Path file = Paths.get(dir).resolve(LocalDateTime.now().format(REPLAY_NAME));
+        try {
+            Files.createDirectories(file.getParent());
+            ReplayRecorder recorder = ReplayRecorder.create(file, game.getSeed());
+            game.recordTo(recorder);
+            System.out.println("Recording replay to " + file);
+            return recorder;
+        } catch (IOException e) {
+            System.out.println("Couldn't start recording replay to " + file);
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-        Renderer renderer = new Renderer(activeGame, renderOut);
+    private static void stopRecording(ReplayRecorder recorder) {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        while (true) {
-            long now = System.currentTimeMillis();
+    private void runGame(GameCore activeGame) {
+        TickScheduler scheduler = new TickScheduler(clock, TICKS_PER_SECOND, catchUp);
+        Renderer renderer = new Renderer(renderOut, Boolean.parseBoolean(System.getProperty(GHOST_PROPERTY, "true")));
+        // Input can only be applied to a falling piece, otherwise it waits for the tick that spawns the next one
+        InputQueue input = inputListener.getInputQueue();
+        BooleanSupplier inputToApply = () -> immediateInput && activeGame.hasActivePiece() && !input.isEmpty();
+        gameThread = Thread.currentThread();
 
-            if (now >= startTime + (tick * tickTime)) {
-                TickResult result = activeGame.tick(inputListener.getNewInput());
-                if (result == TickResult.GAME_OVER) {
-                    break;
-                }
-                if (result == TickResult.VISUAL_CHANGE || tick == 0) {
-                    renderer.renderGame();
-                }
-                tick++;
-            } else {
-                try {
-                    Thread.sleep(tickTime / 5);
-                } catch (InterruptedException e) {
-                    // Not expecting this to ever happen
-                    e.printStackTrace();
+        while (true) {
+            long tick = scheduler.awaitNextTick(inputToApply);
+            if (tick == TickScheduler.NO_TICK) {
+                if (activeGame.applyInput(input)) {
+                    renderer.render(activeGame.getSnapshot());
+                    endOfTick.run();
                 }
+                continue;
+            }
+
+            TickEvent tickEvent = new TickEvent();
+            tickEvent.begin();
+            long tickStart = System.nanoTime();
+            if (autoplayer != null && activeGame.spawnPieceIfNeeded()) {
+                autoplayer.playTick(activeGame, tick);
+            }
+            TickResult result = activeGame.tick(input);
+            TICK_DURATION.recordSince(tickStart);
+            tickEvent.end();
+            if (tickEvent.shouldCommit()) {
+                tickEvent.tick = tick;
+                tickEvent.result = result.name();
+                tickEvent.lateByNanos = scheduler.getLateByNanos();
+                tickEvent.commit();
+            }
+            if (result == TickResult.GAME_OVER) {
+                break;
+            }
+            if (result == TickResult.VISUAL_CHANGE || tick == 0) {
+                renderer.render(activeGame.getSnapshot());
             }
+            endOfTick.run();
         }
 
-        renderer.showGameOverScreen();
+        gameThread = null;
+        renderer.showGameOverScreen(activeGame.getSnapshot());
+        endOfTick.run();
+    }
+
+    private void wakeForInput() {
+        Thread thread = gameThread;
+        if (thread != null && immediateInput) {
+            clock.wake(thread);
+        }
     }
 }
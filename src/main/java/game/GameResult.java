@@ -0,0 +1,21 @@
+package game;
+
+/** How a headless game went. */
+final class GameResult {
+    final long seed;
+    final int score;
+    final int level;
+    final int rowsCleared;
+    final long ticks;
+    // False if it was stopped before the game was over
+    final boolean finished;
+
+    GameResult(long seed, int score, int level, int rowsCleared, long ticks, boolean finished) {
+        this.seed = seed;
+        this.score = score;
+        this.level = level;
+        this.rowsCleared = rowsCleared;
+        this.ticks = ticks;
+        this.finished = finished;
+    }
+}
@@ -0,0 +1,132 @@
+package game;
+
+/**
+ * Everything shown of a game at one moment, which never changes once made. {@link GameCore} publishes a new one
+ * whenever what's shown changes, so anything on any thread can read the latest without locks or seeing a half-done
+ * tick, e.g. to render it while the next tick's simulated.
+ *
+ * Comparing two snapshots says what changed between them however many were skipped in between, which is what lets the
+ * renderer redraw only that.
+ */
+public final class GameSnapshot {
+    static final int ALL_ROWS = (1 << GameCore.BOARD_H) - 1;
+
+    // Landed tiles, ROWS_PER_WORD rows to a long with row y's bit x at (y % ROWS_PER_WORD) * BOARD_W + x
+    private static final int ROWS_PER_WORD = Long.SIZE / GameCore.BOARD_W;
+    private static final int WORDS = (GameCore.BOARD_H + ROWS_PER_WORD - 1) / ROWS_PER_WORD;
+
+    private final long version;
+    private final long[] rows;
+    private final int activePiece;
+    private final int activeRotation;
+    private final int activeX;
+    private final int activeY;
+    // Where the active piece would land, for drawing a ghost of it there
+    private final int landingY;
+    private final int score;
+    private final int level;
+    private final int rowsCleared;
+    private final boolean gameOver;
+
+    /** Copies the game as it is now, so has to be on the thread ticking it. */
+    GameSnapshot(long version, GameCore game) {
+        this.version = version;
+        rows = new long[WORDS];
+        for (int y = 0; y < GameCore.BOARD_H; y++) {
+            rows[y / ROWS_PER_WORD] |= (long) game.getRow(y) << (y % ROWS_PER_WORD * GameCore.BOARD_W);
+        }
+        activePiece = game.hasActivePiece() ? game.getActivePieceId() : -1;
+        activeRotation = game.getActiveRotation();
+        activeX = game.getActiveX();
+        activeY = game.getActiveY();
+        landingY = game.hasActivePiece() ? game.getLandingY() : activeY;
+        score = game.getScore();
+        level = game.getLevel();
+        rowsCleared = game.getRowsCleared();
+        gameOver = game.isGameOver();
+    }
+
+    /** Goes up by one with each snapshot of the same game. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Landed tiles in the given row, with bit x set for each filled column x. */
+    public int getRow(int y) {
+        return (int) (rows[y / ROWS_PER_WORD] >>> (y % ROWS_PER_WORD * GameCore.BOARD_W)) & GameCore.ROW_CELLS;
+    }
+
+    public boolean hasActivePiece() {
+        return activePiece >= 0;
+    }
+
+    public int getActivePieceId() {
+        return activePiece;
+    }
+
+    public int getActiveRotation() {
+        return activeRotation;
+    }
+
+    public int getActiveX() {
+        return activeX;
+    }
+
+    public int getActiveY() {
+        return activeY;
+    }
+
+    /** Where the active piece would end up if dropped straight down, as its y. */
+    public int getLandingY() {
+        return landingY;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getRowsCleared() {
+        return rowsCleared;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /** Board rows that look different in this snapshot than in the older one, with bit y set for row y. */
+    int rowsChangedSince(GameSnapshot older) {
+        int changed = 0;
+        for (int y = 0; y < GameCore.BOARD_H; y++) {
+            if (getRow(y) != older.getRow(y)) {
+                changed |= 1 << y;
+            }
+        }
+        if (activePiece != older.activePiece || activeRotation != older.activeRotation
+                || activeX != older.activeX || activeY != older.activeY) {
+            changed |= activePieceRows(activeY) | older.activePieceRows(older.activeY);
+        }
+        if (activePiece != older.activePiece || activeRotation != older.activeRotation
+                || activeX != older.activeX || landingY != older.landingY) {
+            changed |= activePieceRows(landingY) | older.activePieceRows(older.landingY);
+        }
+        return changed;
+    }
+
+    boolean scoreOrLevelChangedSince(GameSnapshot older) {
+        return score != older.score || level != older.level;
+    }
+
+    /** Rows the active piece would cover at the given y. */
+    private int activePieceRows(int y) {
+        if (!hasActivePiece()) {
+            return 0;
+        }
+        int top = Math.max(0, y + Pieces.minY(activePiece, activeRotation));
+        int bottom = Math.min(GameCore.BOARD_H - 1, y + Pieces.maxY(activePiece, activeRotation));
+        return top > bottom ? 0 : (ALL_ROWS >>> (GameCore.BOARD_H - (bottom - top + 1))) << top;
+    }
+}
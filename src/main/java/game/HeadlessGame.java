@@ -0,0 +1,54 @@
+package game;
+
+/**
+ * Plays a game as fast as it can be stepped, with no mouse, display or real time involved. The same seed & moves
+ * always play out the same game.
+ */
+final class HeadlessGame {
+    private final long seed;
+    private final GameCore game;
+    private final Controller controller;
+    private long ticks = 0;
+    private boolean over = false;
+
+    HeadlessGame(long seed, Controller controller) {
+        this.seed = seed;
+        this.game = new GameCore(Vibrator.NONE, seed);
+        this.controller = controller;
+    }
+
+    /** Plays one tick the same way GameManager does, returning false once the game is over. */
+    boolean step() {
+        if (over) {
+            return false;
+        }
+        if (!game.spawnPieceIfNeeded()) {
+            over = true;
+            return false;
+        }
+        controller.playTick(game, ticks);
+        game.tick(NewUserInput.NONE);
+        ticks++;
+        return true;
+    }
+
+    /** Plays until the game is over, or until it's gone on for maxTicks in case the controller never loses. */
+    GameResult play(long maxTicks) {
+        while (ticks < maxTicks && step()) {
+            // Keep going
+        }
+        return new GameResult(seed, game.getScore(), game.getLevel(), game.getRowsCleared(), ticks, over);
+    }
+
+    GameCore getGame() {
+        return game;
+    }
+
+    long getTicks() {
+        return ticks;
+    }
+
+    boolean isOver() {
+        return over;
+    }
+}
@@ -0,0 +1,22 @@
+package game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("tetris.InputDrain")
+@Label("Input Drained")
+@Category({"Tetris Mouse", "Input"})
+@Description("Mouse input queued since the last drain being applied to the game")
+class InputDrainEvent extends Event {
+    @Label("Moves")
+    int moves;
+
+    @Label("Oldest Move Age")
+    @Description("How long the earliest of the moves waited to be applied")
+    @Timespan
+    long oldestMoveAgeNanos;
+}
@@ -1,5 +1,8 @@
 package game;
 
+import metrics.Counter;
+import metrics.Labelled;
+import metrics.Metrics;
 import org.jnativehook.GlobalScreen;
 import org.jnativehook.mouse.NativeMouseAdapter;
 import org.jnativehook.mouse.NativeMouseEvent;
@@ -7,52 +10,69 @@ import org.jnativehook.mouse.NativeMouseWheelListener;
 
 class InputListener {
 
-    private final Object leftLock = new Object();
-    private final Object rightLock = new Object();
-    private final Object wheelScrollLock = new Object();
+    private static final Labelled<Counter> INPUT_EVENTS = Metrics.counter("tetris_input_events_total",
+            "Mouse events received, by the game input they make", "input");
+    private static final Counter LEFT_CLICK_EVENTS = INPUT_EVENTS.get("left_click");
+    private static final Counter RIGHT_CLICK_EVENTS = INPUT_EVENTS.get("right_click");
+    private static final Counter MIDDLE_CLICK_EVENTS = INPUT_EVENTS.get("middle_click");
+    private static final Counter SCROLL_UP_EVENTS = INPUT_EVENTS.get("scroll_up");
+    private static final Counter SCROLL_DOWN_EVENTS = INPUT_EVENTS.get("scroll_down");
 
-    private volatile int leftClicks = 0;
-    private volatile int rightClicks = 0;
-    private volatile int scrollUps = 0;
-    private volatile int scrollDowns = 0;
+    private final InputQueue inputQueue = new InputQueue();
 
     private boolean listenersAttached = false;
+    private final Runnable onInput;
 
     private final NativeMouseAdapter mouseListener = new NativeMouseAdapter() {
         @Override
         public void nativeMousePressed(NativeMouseEvent nativeMouseEvent) {
+            long now = System.nanoTime();
             //NB: don't use #getClickClount as that just accumulates endlessly until a different button is clicked
             if (nativeMouseEvent.getButton() == NativeMouseEvent.BUTTON1) {
-                synchronized (leftLock) {
-                    leftClicks += 1;
-                }
+                inputQueue.offer(Move.LEFT, now);
+                LEFT_CLICK_EVENTS.increment();
+                onInput.run();
             } else if (nativeMouseEvent.getButton() == NativeMouseEvent.BUTTON2) {
-                synchronized (rightLock) {
-                    rightClicks += 1;
-                }
+                inputQueue.offer(Move.RIGHT, now);
+                RIGHT_CLICK_EVENTS.increment();
+                onInput.run();
+            } else if (nativeMouseEvent.getButton() == NativeMouseEvent.BUTTON3) {
+                inputQueue.offer(Move.HARD_DROP, now);
+                MIDDLE_CLICK_EVENTS.increment();
+                onInput.run();
             }
         }
     };
     private final NativeMouseWheelListener wheelListener = nativeMouseWheelEvent -> {
-        synchronized (wheelScrollLock) {
-            if (nativeMouseWheelEvent.getWheelRotation() < 0) {
-                scrollUps += nativeMouseWheelEvent.getWheelRotation() * -1;
-            } else {
-                scrollDowns += nativeMouseWheelEvent.getWheelRotation();
+        long now = System.nanoTime();
+        int rotation = nativeMouseWheelEvent.getWheelRotation();
+        // Each notch is a separate move
+        if (rotation < 0) {
+            for (int i = 0; i < -rotation; i++) {
+                inputQueue.offer(Move.ROTATE, now);
             }
+            SCROLL_UP_EVENTS.add(-rotation);
+        } else {
+            for (int i = 0; i < rotation; i++) {
+                inputQueue.offer(Move.SOFT_DROP, now);
+            }
+            SCROLL_DOWN_EVENTS.add(rotation);
         }
+        InputListener.this.onInput.run();
     };
 
+    /** @param onInput called from the listening thread after each input is queued */
+    InputListener(Runnable onInput) {
+        this.onInput = onInput;
+    }
+
     void listenToMouseEvents() {
         if (listenersAttached) {
             return;
         }
 
-        // Listener isn't attached so can ignore locks and just rely on volatile status
-        leftClicks = 0;
-        rightClicks = 0;
-        scrollUps = 0;
-        scrollDowns = 0;
+        // Nothing is adding to the queue while the listener isn't attached
+        inputQueue.clear();
 
         GlobalScreen.addNativeMouseListener(mouseListener);
         GlobalScreen.addNativeMouseWheelListener(wheelListener);
@@ -68,44 +88,8 @@ class InputListener {
         listenersAttached = false;
     }
 
-    NewUserInput getNewInput() {
-        return new NewUserInput(
-                getNewLeftClicks(),
-                getNewRightClicks(),
-                getNewScrollUps(),
-                getNewScrollDowns()
-        );
-    }
-
-    private int getNewLeftClicks() {
-        synchronized (leftLock) {
-            int val = leftClicks;
-            leftClicks = 0;
-            return val;
-        }
-    }
-
-    private int getNewRightClicks() {
-        synchronized (rightLock) {
-            int val = rightClicks;
-            rightClicks = 0;
-            return val;
-        }
-    }
-
-    private int getNewScrollUps() {
-        synchronized (wheelScrollLock) {
-            int val = scrollUps;
-            scrollUps = 0;
-            return val;
-        }
-    }
-
-    private int getNewScrollDowns() {
-        synchronized (wheelScrollLock) {
-            int val = scrollDowns;
-            scrollDowns = 0;
-            return val;
-        }
+    /** Moves made since the last time it was drained, in the order they were made. */
+    InputQueue getInputQueue() {
+        return inputQueue;
     }
 }
@@ -0,0 +1,90 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Metrics;
+
+/**
+ * Lock-free ring buffer of moves, in the order they were made, for exactly one thread to add to & one other thread to
+ * drain. JNativeHook delivers every mouse event on its single dispatch thread, so that's the one adding.
+ */
+final class InputQueue {
+    // Power of 2 so indexes can wrap with a mask. Only ever holds what's made between two drains
+    static final int CAPACITY = 256;
+    private static final int MASK = CAPACITY - 1;
+    private static final Move[] MOVES = Move.values();
+
+    private static final Histogram INPUT_LATENCY = Metrics.histogram("tetris_input_latency_seconds",
+            "Time from a mouse event arriving to its move being applied to the game");
+    private static final Counter DROPPED_INPUTS = Metrics.counter("tetris_inputs_dropped_total",
+            "Moves thrown away because the input queue was full");
+
+    /** Takes moves as they're drained. */
+    interface Handler {
+        void onMove(Move move, long timeNanos);
+    }
+
+    private final byte[] moves = new byte[CAPACITY];
+    private final long[] timesNanos = new long[CAPACITY];
+    // Each only ever written by one side. Slots are written before the index passing them is published, so the other
+    // side never sees a slot half written
+    private final AtomicLong writeIndex = new AtomicLong();
+    private final AtomicLong readIndex = new AtomicLong();
+
+    /**
+     * Adding side only. If the queue is full the move is dropped, as the game has clearly stopped taking input.
+     *
+     * @param timeNanos when the move was made, from {@link System#nanoTime()}
+     * @return false if the move was dropped
+     */
+    boolean offer(Move move, long timeNanos) {
+        long write = writeIndex.get();
+        if (write - readIndex.get() == CAPACITY) {
+            DROPPED_INPUTS.increment();
+            return false;
+        }
+        int slot = (int) write & MASK;
+        moves[slot] = (byte) move.ordinal();
+        timesNanos[slot] = timeNanos;
+        writeIndex.lazySet(write + 1);
+        return true;
+    }
+
+    boolean isEmpty() {
+        return readIndex.get() == writeIndex.get();
+    }
+
+    /** Draining side only. Passes every queued move to the handler in the order they were made, returning how many. */
+    int drainTo(Handler handler) {
+        long read = readIndex.get();
+        long write = writeIndex.get();
+        if (read == write) {
+            return 0;
+        }
+
+        InputDrainEvent event = new InputDrainEvent();
+        event.begin();
+        long now = System.nanoTime();
+        long oldestNanos = timesNanos[(int) read & MASK];
+        for (long i = read; i != write; i++) {
+            int slot = (int) i & MASK;
+            INPUT_LATENCY.recordNanos(now - timesNanos[slot]);
+            handler.onMove(MOVES[moves[slot]], timesNanos[slot]);
+        }
+        // Only now can the slots be reused
+        readIndex.lazySet(write);
+        event.end();
+        if (event.shouldCommit()) {
+            event.moves = (int) (write - read);
+            event.oldestMoveAgeNanos = now - oldestNanos;
+            event.commit();
+        }
+        return (int) (write - read);
+    }
+
+    /** Throws away anything queued. Only safe while nothing is adding. */
+    void clear() {
+        readIndex.set(writeIndex.get());
+    }
+}
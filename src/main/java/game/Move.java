@@ -0,0 +1,12 @@
+package game;
+
+/** A single step the player can make to the active piece. */
+public enum Move {
+    // Replays store moves by ordinal, so new ones go on the end
+    LEFT, RIGHT, ROTATE, SOFT_DROP,
+    /**
+     * Drops the piece straight down as far as it'll go. It lands at the end of the tick, & can't be moved again
+     * meanwhile.
+     */
+    HARD_DROP
+}
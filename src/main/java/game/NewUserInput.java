@@ -1,6 +1,8 @@
 package game;
 
 class NewUserInput {
+    static final NewUserInput NONE = new NewUserInput(0, 0, 0, 0);
+
     final int leftClicks;
     final int rightClicks;
     final int scrollUps;
@@ -0,0 +1,160 @@
+package game;
+
+/**
+ * Every rotation state of the seven pieces, worked out once when the class loads.
+ * Pieces are referred to by id & rotation index so moving them around never allocates.
+ */
+final class Pieces {
+
+    // First pair are the rotate space of the shape, subsequent pairs are the initial tiles positions in the space
+    private static final int [][][] SHAPES = {
+            // Line
+            { {4, 4}, {0, 1}, {1, 1}, {2, 1}, {3, 1} },
+            // Square
+            { {2, 2}, {0, 0}, {1, 0}, {0, 1}, {1, 1} },
+            // Ls
+            { {3, 3}, {0, 0}, {0, 1}, {1, 1}, {2, 1} },
+            { {3, 3}, {0, 1}, {1, 1}, {2, 1}, {0, 2} },
+            // Zs
+            { {3, 3}, {0, 1}, {1, 1}, {1, 0}, {2, 0} },
+            { {3, 3}, {0, 0}, {1, 0}, {1, 1}, {2, 1} },
+            // T
+            { {3, 3}, {1, 0}, {0, 1}, {1, 1}, {2, 1} }
+    };
+
+    static final int COUNT = SHAPES.length;
+    static final int ROTATIONS = 4;
+    static final int SPAWN_X = 3;
+
+    // Masks pack a piece's 4x4 space into 16 bits, 4 bits per row with row 0 in the lowest bits.
+    // Within a row, bit tx is set for a tile in column tx of the space.
+    private static final int ROW_BITS = 4;
+    private static final int ROW_MASK = (1 << ROW_BITS) - 1;
+
+    private static final int[][] MASKS = new int[COUNT][ROTATIONS];
+    // Bounding box of the tiles within the piece's space, inclusive
+    private static final int[][] MIN_X = new int[COUNT][ROTATIONS];
+    private static final int[][] MAX_X = new int[COUNT][ROTATIONS];
+    private static final int[][] MIN_Y = new int[COUNT][ROTATIONS];
+    private static final int[][] MAX_Y = new int[COUNT][ROTATIONS];
+    // Highest & lowest tile in each column of the piece's space, packed 4 bits per column like the masks, with
+    // NO_TILE for an empty column
+    private static final int NO_TILE = ROW_MASK;
+    private static final int[][] TOPS = new int[COUNT][ROTATIONS];
+    private static final int[][] BOTTOMS = new int[COUNT][ROTATIONS];
+    private static final int[] SPAWN_Y = new int[COUNT];
+
+    static {
+        for (int piece = 0; piece < COUNT; piece++) {
+            int[][] shape = SHAPES[piece];
+            int n = shape[0][0];
+            assert n == shape[0][1] && n <= ROW_BITS;
+
+            int mask = 0;
+            for (int i = 1; i < shape.length; i++) {
+                mask |= 1 << (shape[i][1] * ROW_BITS + shape[i][0]);
+            }
+            for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+                MASKS[piece][rotation] = mask;
+                computeBounds(piece, rotation, mask);
+                mask = rotateClockwise(mask, n);
+            }
+            // If top row(s) of the piece space are empty, then initial Y value must be higher to place at top of board
+            SPAWN_Y[piece] = -MIN_Y[piece][0];
+        }
+    }
+
+    private Pieces() {
+    }
+
+    /** Rotates tiles 90 degrees clockwise in the given piece's n x n space. */
+    private static int rotateClockwise(int mask, int n) {
+        int result = 0;
+        for (int x = 0; x < n; x++) {
+            for (int y = 0; y < n; y++) {
+                if (hasTile(mask, y, n - x - 1)) {
+                    result |= 1 << (y * ROW_BITS + x);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void computeBounds(int piece, int rotation, int mask) {
+        int minX = ROW_BITS, maxX = -1, minY = ROW_BITS, maxY = -1;
+        for (int y = 0; y < ROW_BITS; y++) {
+            for (int x = 0; x < ROW_BITS; x++) {
+                if (hasTile(mask, x, y)) {
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        MIN_X[piece][rotation] = minX;
+        MAX_X[piece][rotation] = maxX;
+        MIN_Y[piece][rotation] = minY;
+        MAX_Y[piece][rotation] = maxY;
+
+        int tops = 0;
+        int bottoms = 0;
+        for (int x = ROW_BITS - 1; x >= 0; x--) {
+            int top = NO_TILE;
+            int bottom = NO_TILE;
+            for (int y = 0; y < ROW_BITS; y++) {
+                if (hasTile(mask, x, y)) {
+                    top = Math.min(top, y);
+                    bottom = y;
+                }
+            }
+            tops = tops << ROW_BITS | top;
+            bottoms = bottoms << ROW_BITS | bottom;
+        }
+        TOPS[piece][rotation] = tops;
+        BOTTOMS[piece][rotation] = bottoms;
+    }
+
+    private static boolean hasTile(int mask, int tx, int ty) {
+        return (mask & (1 << (ty * ROW_BITS + tx))) != 0;
+    }
+
+    static int nextRotation(int rotation) {
+        return (rotation + 1) % ROTATIONS;
+    }
+
+    /** Tiles in row ty of the piece's space, with bit tx set for each tile. */
+    static int rowMask(int piece, int rotation, int ty) {
+        return (MASKS[piece][rotation] >>> (ty * ROW_BITS)) & ROW_MASK;
+    }
+
+    static int minX(int piece, int rotation) {
+        return MIN_X[piece][rotation];
+    }
+
+    static int maxX(int piece, int rotation) {
+        return MAX_X[piece][rotation];
+    }
+
+    static int minY(int piece, int rotation) {
+        return MIN_Y[piece][rotation];
+    }
+
+    static int maxY(int piece, int rotation) {
+        return MAX_Y[piece][rotation];
+    }
+
+    /** Row of the highest tile in column tx of the piece's space. Only for columns between minX & maxX. */
+    static int topY(int piece, int rotation, int tx) {
+        return (TOPS[piece][rotation] >>> (tx * ROW_BITS)) & ROW_MASK;
+    }
+
+    /** Row of the lowest tile in column tx of the piece's space, the one that lands first. As with {@link #topY}. */
+    static int bottomY(int piece, int rotation, int tx) {
+        return (BOTTOMS[piece][rotation] >>> (tx * ROW_BITS)) & ROW_MASK;
+    }
+
+    static int spawnY(int piece) {
+        return SPAWN_Y[piece];
+    }
+}
@@ -0,0 +1,22 @@
+package game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("tetris.Render")
+@Label("Render Frame")
+@Category({"Tetris Mouse", "Game"})
+@Description("Drawing a frame & handing it over to be shown")
+class RenderEvent extends Event {
+    @Label("Game Over Screen")
+    boolean gameOver;
+
+    @Label("Full Redraw")
+    boolean fullRedraw;
+
+    @Label("Board Rows Redrawn")
+    int rowsRedrawn;
+}
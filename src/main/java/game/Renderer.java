@@ -1,182 +1,278 @@
 package game;
 
-import java.awt.Color;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.function.Consumer;
-import javax.imageio.ImageIO;
+import metrics.Histogram;
+import metrics.Metrics;
 
+/**
+ * Draws snapshots of a game (see {@link GameSnapshot}), so it can run on a different thread from the one ticking it.
+ * Only draws what's changed since the last snapshot drawn.
+ */
 class Renderer {
+    private static final int CHAR_WIDTH = 6;
+    private static final int CHAR_HEIGHT = 12;
+    private static final Sprite[] DIGITS = new Sprite[10];
+
     static {
         try {
-            SCORE_CHAR_MAP = ImageIO.read(GameCore.class.getResource("/char_map_6x12.bmp"));
-            GAME_OVER_TEXT = ImageIO.read(GameCore.class.getResource("/game_over.bmp"));
-            SCORE_TEXT = ImageIO.read(GameCore.class.getResource("/text_score.bmp"));
-            LVL_TEXT = ImageIO.read(GameCore.class.getResource("/text_lvl.bmp"));
+            SpriteSheet sprites = SpriteSheet.load();
+            Sprite charMap = sprites.get("char_map_6x12");
+            for (int i = 0; i < DIGITS.length; i++) {
+                DIGITS[i] = charMap.slice(i * CHAR_WIDTH, CHAR_WIDTH);
+            }
+            GAME_OVER_TEXT = sprites.get("game_over");
+            SCORE_TEXT = sprites.get("text_score");
+            LVL_TEXT = sprites.get("text_lvl");
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static final BufferedImage SCORE_CHAR_MAP;
-    private static final int CHAR_WIDTH = 6;
-    private static final int CHAR_HEIGHT = 12;
-    private static final BufferedImage GAME_OVER_TEXT;
-    private static final BufferedImage SCORE_TEXT;
-    private static final BufferedImage LVL_TEXT;
+    private static final Sprite GAME_OVER_TEXT;
+    private static final Sprite SCORE_TEXT;
+    private static final Sprite LVL_TEXT;
+
+    private static final int MAX_SCORE_SHOWN = 999999;
+    private static final int MAX_DIGITS = 6;
+    // Displays it as far down the screen as possible, with current sizes of images and spacing
+    private static final int SCORE_AND_LEVEL_Y = 70;
+
+    private static final Histogram RENDER_DURATION = Metrics.histogram("tetris_render_duration_seconds",
+            "Time spent drawing a frame & handing it over");
+
+    // Enough for a sink to have one frame being sent, one waiting & one just handed over, with one left to draw into
+    private static final int FRAME_BUFFERS = 4;
+
+    private static final int BLOCK_SIZE = 3;
+    private static final int BORDER_WIDTH = 1;
+    private static final int BOARD_PIXELS_W = GameCore.BOARD_W * BLOCK_SIZE + BORDER_WIDTH * 2;
+    private static final int BOARD_PIXELS_H = GameCore.BOARD_H * BLOCK_SIZE + BORDER_WIDTH * 2;
+
+    // Column patterns for a block, as drawn by FrameBuffer#orColumn: landed tiles are outlined, active ones filled &
+    // the ghost of where the active piece would land is just the corners
+    private static final long BLOCK_EDGE = 0b111L << (Long.SIZE - BLOCK_SIZE);
+    private static final long BLOCK_MIDDLE = 0b101L << (Long.SIZE - BLOCK_SIZE);
+    private static final long GHOST_EDGE = 0b101L << (Long.SIZE - BLOCK_SIZE);
+    private static final long GHOST_MIDDLE = 0;
+    private static final long BORDER_TOP_AND_BOTTOM = Long.MIN_VALUE | Long.MIN_VALUE >>> (BOARD_PIXELS_H - 1);
 
-    private static final int DISPLAY_SHORT = 36;
-    private static final int DISPLAY_LONG = 128;
+    private final FrameSink renderOut;
+    private final boolean showGhost;
+    private final FramePool framePool = new FramePool(FRAME_BUFFERS);
+    private final Consumer<int[]> releaseFrame = framePool::release;
+    // Kept between frames so only the parts that have changed need redrawing
+    private final FrameBuffer frame = new FrameBuffer();
+    // Null when the whole frame needs redrawing
+    private GameSnapshot drawn = null;
 
-    private final GameCore game;
-    private final Consumer<int[]> renderOut;
+    // Score & level displays are only redrawn when the numbers change
+    private final FrameBuffer scoreAndLevel = new FrameBuffer();
+    private final int[] digits = new int[MAX_DIGITS];
+    private int shownScore = -1;
+    private int shownLevel = -1;
 
-    public Renderer(GameCore activeGame, Consumer<int[]> renderOut) {
-        this.game = activeGame;
+    // Reused each frame. Pixels down the outer & middle columns of each column of blocks on the board
+    private final long[] blockEdgeColumns = new long[GameCore.BOARD_W];
+    private final long[] blockMiddleColumns = new long[GameCore.BOARD_W];
+
+    public Renderer(FrameSink renderOut) {
+        this(renderOut, true);
+    }
+
+    /** @param showGhost whether to show where the active piece would land */
+    public Renderer(FrameSink renderOut, boolean showGhost) {
         this.renderOut = renderOut;
+        this.showGhost = showGhost;
     }
 
-    public void renderGame() {
+    public void render(GameSnapshot game) {
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        long start = System.nanoTime();
         // Think of as vertical display (thin & tall)
-        boolean[][] pixels = new boolean[DISPLAY_SHORT][DISPLAY_LONG];
-
-        int blockSize = 3;
-
-        // Paint 1 pixel border around the board area
-        int bw = 1; // border width
-        drawRect(pixels, 0, 0, GameCore.BOARD_W * blockSize + bw * 2, GameCore.BOARD_H * blockSize + bw * 2);
-
-        // Draw the active tiles
-        boolean[][] activePiece = game.getActivePiece();
-        if (activePiece != null) {
-            for (int tx = 0; tx < activePiece.length; tx++) {
-                for (int ty = 0; ty < activePiece[0].length; ty++) {
-                    if (activePiece[tx][ty]) {
-                        int activeX = game.getActiveX();
-                        int activeY = game.getActiveY();
-                        fillRect(pixels, (activeX + tx) * blockSize + bw, (activeY + ty) * blockSize + bw, blockSize, blockSize);
-                    }
-                }
+        boolean fullRedraw = drawn == null;
+        int changedRows = fullRedraw ? GameSnapshot.ALL_ROWS : game.rowsChangedSince(drawn);
+        if (fullRedraw) {
+            frame.clear();
+            drawBoardBorder();
+            drawBoardRows(game, changedRows);
+            drawScoreAndLevelDisplays(game);
+        } else {
+            // Only patch what's changed since the last frame
+            if (changedRows != 0) {
+                drawBoardRows(game, changedRows);
             }
-        }
-        // Draw settled tiles on the board
-        boolean[][] board = game.getBoard();
-        for (int x = 0; x < board.length; x++) {
-            for (int y = 0; y < board[0].length; y++) {
-                if (board[x][y]) {
-                    drawRect(pixels, x * blockSize + bw, y * blockSize + bw, blockSize, blockSize);
-                }
+            if (game.scoreOrLevelChangedSince(drawn)) {
+                drawScoreAndLevelDisplays(game);
             }
         }
+        drawn = game;
 
-        drawScoreAndLevelDisplays(pixels);
+//        debug_printPixels(frame);
 
-//        debug_printPixels(pixels);
+        sendFrame();
+        RENDER_DURATION.recordSince(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.fullRedraw = fullRedraw;
+            event.rowsRedrawn = Integer.bitCount(changedRows);
+            event.commit();
+        }
+    }
 
-        renderOut.accept(convertPixelsToInts(pixels));
+    /** 1 pixel border around the board area. */
+    private void drawBoardBorder() {
+        frame.fillSpan(0, 0, BOARD_PIXELS_H);
+        for (int x = 1; x < BOARD_PIXELS_W - 1; x++) {
+            frame.orColumn(x, 0, BORDER_TOP_AND_BOTTOM);
+        }
+        frame.fillSpan(BOARD_PIXELS_W - 1, 0, BOARD_PIXELS_H);
     }
 
-    private static void drawRect(boolean[][] pixels, int x, int y, int w, int h) {
-        for (int i = x; i < x + w; i++) {
-            pixels[i][y] = true;
-            pixels[i][y + h - 1] = true;
+    /**
+     * Redraws the given board rows (bit y set for row y). Builds up each column of blocks as whole columns of pixels,
+     * then writes them into the frame in one go.
+     */
+    private void drawBoardRows(GameSnapshot game, int boardRows) {
+        long rowPixels = 0;
+        for (int x = 0; x < GameCore.BOARD_W; x++) {
+            blockEdgeColumns[x] = 0;
+            blockMiddleColumns[x] = 0;
         }
-        for (int i = y; i < y + h; i++) {
-            pixels[x][i] = true;
-            pixels[x + w - 1][i] = true;
+
+        // Settled tiles on the board
+        for (int rowsLeft = boardRows; rowsLeft != 0; rowsLeft &= rowsLeft - 1) {
+            int y = Integer.numberOfTrailingZeros(rowsLeft);
+            int blockTop = pixelsDownToBlock(y);
+            rowPixels |= BLOCK_EDGE >>> blockTop;
+            int row = game.getRow(y);
+            while (row != 0) {
+                int x = Integer.numberOfTrailingZeros(row);
+                row &= row - 1;
+                blockEdgeColumns[x] |= BLOCK_EDGE >>> blockTop;
+                blockMiddleColumns[x] |= BLOCK_MIDDLE >>> blockTop;
+            }
+        }
+
+        if (game.hasActivePiece()) {
+            if (showGhost) {
+                drawActivePieceAt(game, game.getLandingY(), boardRows, GHOST_EDGE, GHOST_MIDDLE);
+            }
+            drawActivePieceAt(game, game.getActiveY(), boardRows, BLOCK_EDGE, BLOCK_EDGE);
+        }
+
+        for (int x = 0; x < GameCore.BOARD_W; x++) {
+            int left = x * BLOCK_SIZE + BORDER_WIDTH;
+            frame.writeColumn(left, 0, blockEdgeColumns[x], rowPixels);
+            frame.writeColumn(left + 1, 0, blockMiddleColumns[x], rowPixels);
+            frame.writeColumn(left + 2, 0, blockEdgeColumns[x], rowPixels);
         }
     }
 
-    private static void fillRect(boolean[][] pixels, int x, int y, int w, int h) {
-        for (int ix = x; ix < x + w; ix++) {
-            for (int iy = y; iy < y + h; iy++) {
-                pixels[ix][iy] = true;
+    /** Adds the active piece's tiles at the given y to the block columns, in the given rows only. */
+    private void drawActivePieceAt(GameSnapshot game, int y, int boardRows, long edge, long middle) {
+        int piece = game.getActivePieceId();
+        int rotation = game.getActiveRotation();
+        int activeX = game.getActiveX();
+        for (int ty = Pieces.minY(piece, rotation); ty <= Pieces.maxY(piece, rotation); ty++) {
+            if ((boardRows & (1 << (y + ty))) == 0) {
+                continue;
+            }
+            int blockTop = pixelsDownToBlock(y + ty);
+            int pieceRow = Pieces.rowMask(piece, rotation, ty);
+            while (pieceRow != 0) {
+                int x = activeX + Integer.numberOfTrailingZeros(pieceRow);
+                pieceRow &= pieceRow - 1;
+                blockEdgeColumns[x] |= edge >>> blockTop;
+                blockMiddleColumns[x] |= middle >>> blockTop;
             }
         }
     }
 
-    private void drawScoreAndLevelDisplays(boolean[][] pixels) {
-        int y = 70; // Displays it as far down the screen as possible, with current sizes of images and spacing
-        drawImage(pixels, SCORE_TEXT, 0, y);
-        y += SCORE_TEXT.getHeight() + 2;
-        drawScoreNumber(pixels, y);
-        y += CHAR_HEIGHT;
-        drawImage(pixels, LVL_TEXT, 0, y);
-        y += LVL_TEXT.getHeight();
-        drawLevelNumber(pixels, y);
+    private static int pixelsDownToBlock(int boardY) {
+        return boardY * BLOCK_SIZE + BORDER_WIDTH;
     }
 
-    private void drawScoreNumber(boolean[][] pixels, int y) {
-        int numToDisplay = Math.min(game.getScore(), 999999);
-        char[] numDigits = String.format("%d", numToDisplay).toCharArray();
-        // Right up to edge since 6 digits fills the available width
-        int x = DISPLAY_SHORT - numDigits.length * CHAR_WIDTH;
-        drawNumber(pixels, numDigits, x, y);
+    private void sendFrame() {
+        int[] render = framePool.acquire();
+        frame.packInto(render);
+        renderOut.accept(render, releaseFrame);
     }
 
-    private void drawNumber(boolean[][] pixels, char[] numDigits, int x, int y) {
-        for (int i = 0; i < numDigits.length; i++) {
-            drawNumDigit(pixels, x + CHAR_WIDTH * i , y, Character.digit(numDigits[i], 10));
+    private void drawScoreAndLevelDisplays(GameSnapshot game) {
+        int score = Math.min(game.getScore(), MAX_SCORE_SHOWN);
+        int level = game.getLevel();
+        if (score != shownScore || level != shownLevel) {
+            scoreAndLevel.clear();
+            rasteriseScoreAndLevel(score, level);
+            shownScore = score;
+            shownLevel = level;
         }
+        frame.copyRegion(scoreAndLevel, SCORE_AND_LEVEL_Y, FrameBuffer.DISPLAY_LONG - SCORE_AND_LEVEL_Y);
     }
 
-    private static void drawNumDigit(boolean[][] pixels, int x, int y, int numDigit) {
-        assert 0 <= numDigit && numDigit < 10;
-        if (SCORE_CHAR_MAP == null) {
-            return;
-        }
-        BufferedImage charTile = SCORE_CHAR_MAP.getSubimage(numDigit * CHAR_WIDTH, 0, CHAR_WIDTH, CHAR_HEIGHT);
-        drawImage(pixels, charTile, x, y);
+    private void rasteriseScoreAndLevel(int score, int level) {
+        int y = SCORE_AND_LEVEL_Y;
+        SCORE_TEXT.drawInto(scoreAndLevel, 0, y);
+        y += SCORE_TEXT.getHeight() + 2;
+        // Right up to edge since 6 digits fills the available width
+        drawNumber(score, FrameBuffer.DISPLAY_SHORT, y);
+        y += CHAR_HEIGHT;
+        LVL_TEXT.drawInto(scoreAndLevel, 0, y);
+        y += LVL_TEXT.getHeight();
+        drawNumber(level, FrameBuffer.DISPLAY_SHORT - 2, y);
     }
 
-    private static void drawImage(boolean[][] pixels, BufferedImage img, int x, int y) {
-        for (int px = 0; px < img.getWidth(); px++) {
-            for (int py = 0; py < img.getHeight(); py++) {
-                int col = img.getRGB(px, py);
-                if (col == Color.BLACK.getRGB()) {
-                    pixels[x + px][y + py] = true;
-                }
-            }
+    /** Draws the number with its last digit ending just before the given x. */
+    private void drawNumber(int num, int rightX, int y) {
+        int numDigits = toDigits(num);
+        int x = rightX - numDigits * CHAR_WIDTH;
+        for (int i = 0; i < numDigits; i++) {
+            DIGITS[digits[i]].drawInto(scoreAndLevel, x + CHAR_WIDTH * i, y);
         }
     }
 
-    private int[] convertPixelsToInts(boolean[][] pixels) {
-        int[] render = new int[DISPLAY_LONG * DISPLAY_SHORT / 8];
-        for (int x = 0; x < DISPLAY_LONG; x++) {
-            for (int y = 0; y < DISPLAY_SHORT; y++) {
-                // Rotating the pixel grid 90 anticlockwise to show on horizontal screen (short and wide)
-                if (pixels[DISPLAY_SHORT - y - 1][x]) {
-                    int bit = x + (y * DISPLAY_LONG);
-                    int byteInArr = bit / 8;
-                    int bitInByte = bit % 8;
-                    render[byteInArr] = render[byteInArr] | 1 << (7 - bitInByte);
-                }
-            }
+    /** Fills the digit buffer with the decimal digits of num, most significant first, returning how many there are. */
+    private int toDigits(int num) {
+        assert 0 <= num && num <= MAX_SCORE_SHOWN;
+        int numDigits = 1;
+        for (int rest = num / 10; rest > 0; rest /= 10) {
+            numDigits++;
+        }
+        for (int i = numDigits - 1; i >= 0; i--) {
+            digits[i] = num % 10;
+            num /= 10;
         }
-        return render;
+        return numDigits;
     }
 
-    public void showGameOverScreen() {
-        boolean[][] pixels = new boolean[DISPLAY_SHORT][DISPLAY_LONG];
-        drawImage(pixels, GAME_OVER_TEXT, 0, 0);
-        drawScoreAndLevelDisplays(pixels);
+    public void showGameOverScreen(GameSnapshot game) {
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        long start = System.nanoTime();
+        frame.clear();
+        GAME_OVER_TEXT.drawInto(frame, 0, 0);
+        drawScoreAndLevelDisplays(game);
+        drawn = null;
 
-//        debug_printPixels(pixels);
+//        debug_printPixels(frame);
 
-        renderOut.accept(convertPixelsToInts(pixels));
-    }
-
-    private void drawLevelNumber(boolean[][] pixels, int y) {
-        char[] scoreDigits = String.format("%d", game.getLevel()).toCharArray();
-        int lvlX = DISPLAY_SHORT - 2 - scoreDigits.length * CHAR_WIDTH;
-        drawNumber(pixels, scoreDigits, lvlX, y);
+        sendFrame();
+        RENDER_DURATION.recordSince(start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.gameOver = true;
+            event.fullRedraw = true;
+            event.commit();
+        }
     }
 
-    private void debug_printPixels(boolean[][] pixels) {
+    private void debug_printPixels(FrameBuffer pixels) {
         StringBuilder sb = new StringBuilder();
-        for (int y = 0; y < DISPLAY_LONG; y++) {
-            for (int x = 0; x < DISPLAY_SHORT; x++) {
-                sb.append(pixels[x][y] ? "X" : ".");
+        for (int y = 0; y < FrameBuffer.DISPLAY_LONG; y++) {
+            for (int x = 0; x < FrameBuffer.DISPLAY_SHORT; x++) {
+                sb.append(pixels.getPixel(x, y) ? "X" : ".");
             }
             sb.append("\n");
         }
@@ -0,0 +1,145 @@
+package game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Plays a replay log back headlessly as fast as it can, checking it ends the same way it did when recorded. Can also
+ * draw each frame again, writing them one after another as the bytes that would be sent to the mouse.
+ */
+public final class Replay {
+    private Replay() {
+    }
+
+    /** Usage: Replay &lt;log&gt; [frames file] */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: Replay <log> [frames file]");
+            System.exit(2);
+        }
+        ReplayLog log = ReplayLog.open(Paths.get(args[0]));
+
+        List<String> problems;
+        if (args.length > 1) {
+            try (FrameWriter frames = new FrameWriter(Paths.get(args[1]))) {
+                problems = verify(log, frames);
+            }
+        } else {
+            problems = verify(log, null);
+        }
+
+        if (problems.isEmpty()) {
+            System.out.println("Replay matches the log");
+        } else {
+            problems.forEach(System.out::println);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays the log back, returning everything that didn't match it.
+     *
+     * @param frames gets each frame that changed, or null to skip drawing them
+     */
+    static List<String> verify(ReplayLog log, Consumer<int[]> frames) {
+        HeadlessGame game = new HeadlessGame(log.getSeed(), log);
+        Renderer renderer = frames == null ? null : new Renderer(FrameSink.copying(frames));
+        List<String> problems = new ArrayList<>();
+
+        GameSnapshot drawn = null;
+        long start = System.nanoTime();
+        while (log.hasNextTick()) {
+            if (!game.step()) {
+                problems.add("Game ended after " + game.getTicks() + " ticks, before the log did");
+                break;
+            }
+            GameSnapshot snapshot = game.getGame().getSnapshot();
+            if (renderer != null && snapshot != drawn) {
+                renderer.render(snapshot);
+                drawn = snapshot;
+            }
+        }
+        long ticks = game.getTicks();
+        long nanos = System.nanoTime() - start;
+
+        if (!problems.isEmpty()) {
+            return problems;
+        }
+        if (!log.isFinished()) {
+            problems.add("Log was cut short after " + ticks + " ticks, so there's nothing to check against");
+            return problems;
+        }
+        if (game.step()) {
+            problems.add("Game carried on after " + ticks + " ticks, where the log ended");
+        }
+        if (renderer != null) {
+            renderer.showGameOverScreen(game.getGame().getSnapshot());
+        }
+
+        GameCore core = game.getGame();
+        System.out.printf(Locale.ROOT, "Replayed %d ticks in %.1fms: score %d, board hash %016x%n",
+                ticks, nanos / 1e6, core.getScore(), ReplayFormat.boardHash(core));
+        if (ticks != log.getTicks()) {
+            problems.add("Ticks: expected " + log.getTicks() + ", got " + ticks);
+        }
+        if (core.getScore() != log.getScore()) {
+            problems.add("Score: expected " + log.getScore() + ", got " + core.getScore());
+        }
+        if (ReplayFormat.boardHash(core) != log.getBoardHash()) {
+            problems.add(String.format("Board hash: expected %016x, got %016x",
+                    log.getBoardHash(), ReplayFormat.boardHash(core)));
+        }
+        return problems;
+    }
+
+    /** Appends each frame's bytes to a file, buffered so it's not a write per frame. */
+    private static final class FrameWriter implements Consumer<int[]>, AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(FrameBuffer.PACKED_LENGTH * 64);
+
+        FrameWriter(Path file) throws IOException {
+            channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public void accept(int[] frame) {
+            try {
+                if (buffer.remaining() < frame.length) {
+                    writeBuffer();
+                }
+                for (int value : frame) {
+                    buffer.put((byte) value);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writeBuffer();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
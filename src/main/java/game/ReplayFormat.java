@@ -0,0 +1,69 @@
+package game;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of a replay log, written by {@link ReplayRecorder} & read by {@link ReplayLog}:
+ * <pre>
+ * "TMRP" | version byte | seed (8 bytes)
+ * a record for each tick, or run of ticks with no moves (varint):
+ *   even: (ticks &lt;&lt; 1) ticks in a row with no moves
+ *   odd: (moves &lt;&lt; 1 | 1) followed by a byte per move, for one tick
+ * 0, marking the end of the ticks
+ * ticks played (varint) | final score (varint) | final board hash (8 bytes)
+ * </pre>
+ * Varints are unsigned LEB128, 7 bits a byte with the lowest bits first. Multi-byte numbers are big endian. The
+ * trailer after the ticks is only there if the game was played to the end.
+ */
+final class ReplayFormat {
+    static final int MAGIC = 0x544D5250; // "TMRP"
+    static final byte VERSION = 1;
+    static final int HEADER_LENGTH = Integer.BYTES + 1 + Long.BYTES;
+    static final int END_OF_TICKS = 0;
+    static final int MAX_VARINT_LENGTH = 10;
+
+    private static final Move[] MOVES = Move.values();
+
+    private ReplayFormat() {
+    }
+
+    static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long at " + in.position());
+    }
+
+    static Move move(byte encoded) {
+        if (encoded < 0 || encoded >= MOVES.length) {
+            throw new IllegalArgumentException("Unknown move: " + encoded);
+        }
+        return MOVES[encoded];
+    }
+
+    /** FNV-1a over the landed tiles, for checking a replay ends up with the same board. */
+    static long boardHash(GameCore game) {
+        long hash = 0xcbf29ce484222325L;
+        for (int y = 0; y < GameCore.BOARD_H; y++) {
+            int row = game.getRow(y);
+            for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+                hash ^= (row >>> shift) & 0xFF;
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+}
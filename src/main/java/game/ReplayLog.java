@@ -0,0 +1,122 @@
+package game;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/** Reads a replay log (see {@link ReplayFormat}), making each recorded tick's moves as a {@link Controller}. */
+final class ReplayLog implements Controller {
+    private final ByteBuffer in;
+    private final long seed;
+
+    private long emptyTicksLeft = 0;
+    private int movesLeft = 0;
+    private boolean ended = false;
+
+    // From the trailer, only there if the game was played to the end
+    private boolean finished = false;
+    private long ticks;
+    private int score;
+    private long boardHash;
+
+    ReplayLog(ByteBuffer in) {
+        this.in = in;
+        if (in.remaining() < ReplayFormat.HEADER_LENGTH || in.getInt() != ReplayFormat.MAGIC) {
+            throw new IllegalArgumentException("Not a replay log");
+        }
+        byte version = in.get();
+        if (version != ReplayFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported replay log version: " + version);
+        }
+        seed = in.getLong();
+    }
+
+    /** Maps the file rather than reading it all in. */
+    static ReplayLog open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new ReplayLog(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Whether there's another tick recorded. False at the end of the ticks, or if the log was cut short, even partway
+     * through a record or the trailer.
+     */
+    boolean hasNextTick() {
+        if (emptyTicksLeft > 0 || movesLeft > 0) {
+            return true;
+        }
+        if (ended) {
+            return false;
+        }
+        if (!in.hasRemaining()) {
+            ended = true;
+            return false;
+        }
+
+        long record;
+        try {
+            record = ReplayFormat.getVarint(in);
+            if (record == ReplayFormat.END_OF_TICKS) {
+                ended = true;
+                ticks = ReplayFormat.getVarint(in);
+                score = (int) ReplayFormat.getVarint(in);
+                boardHash = in.getLong();
+                finished = true;
+                return false;
+            }
+        } catch (BufferUnderflowException e) {
+            // The recorder's buffer was written out partway through, then the game stopped before the rest was
+            ended = true;
+            return false;
+        }
+        if ((record & 1) == 0) {
+            emptyTicksLeft = record >>> 1;
+        } else {
+            movesLeft = (int) (record >>> 1);
+            if (in.remaining() < movesLeft) {
+                movesLeft = 0;
+                ended = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void playTick(GameCore game, long tick) {
+        if (!hasNextTick()) {
+            return;
+        }
+        if (emptyTicksLeft > 0) {
+            emptyTicksLeft--;
+            return;
+        }
+        for (; movesLeft > 0; movesLeft--) {
+            game.move(ReplayFormat.move(in.get()));
+        }
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    /** Whether the log says how the game ended, which it only knows once {@link #hasNextTick()} is false. */
+    boolean isFinished() {
+        return finished;
+    }
+
+    long getTicks() {
+        return ticks;
+    }
+
+    int getScore() {
+        return score;
+    }
+
+    long getBoardHash() {
+        return boardHash;
+    }
+}
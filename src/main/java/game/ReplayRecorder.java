@@ -0,0 +1,130 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a game's seed & moves to a replay log (see {@link ReplayFormat}) as it's played. Everything goes into a
+ * buffer that's only written out once full, so a game usually only touches the file when it's closed.
+ *
+ * If writing fails, recording stops rather than the game.
+ */
+final class ReplayRecorder implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // Moves made so far in the current tick
+    private byte[] tickMoves = new byte[16];
+    private int tickMoveCount = 0;
+    private long emptyTicks = 0;
+    private long ticks = 0;
+    private boolean failed = false;
+
+    private ReplayRecorder(FileChannel channel, long seed) {
+        this.channel = channel;
+        buffer.putInt(ReplayFormat.MAGIC);
+        buffer.put(ReplayFormat.VERSION);
+        buffer.putLong(seed);
+    }
+
+    /** Starts a log for a game with the given seed, replacing any file already there. */
+    static ReplayRecorder create(Path file, long seed) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new ReplayRecorder(channel, seed);
+    }
+
+    void onMove(Move move) {
+        if (tickMoveCount == tickMoves.length) {
+            byte[] bigger = new byte[tickMoves.length * 2];
+            System.arraycopy(tickMoves, 0, bigger, 0, tickMoveCount);
+            tickMoves = bigger;
+        }
+        tickMoves[tickMoveCount++] = (byte) move.ordinal();
+    }
+
+    void endTick() {
+        ticks++;
+        if (tickMoveCount == 0) {
+            emptyTicks++;
+            return;
+        }
+        try {
+            putEmptyTicks();
+            ensureRemaining(ReplayFormat.MAX_VARINT_LENGTH);
+            ReplayFormat.putVarint(buffer, (long) tickMoveCount << 1 | 1);
+            for (int i = 0; i < tickMoveCount; i++) {
+                ensureRemaining(1);
+                buffer.put(tickMoves[i]);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+        tickMoveCount = 0;
+    }
+
+    /** Ends the log with how the game finished, so a replay can be checked against it. */
+    void finish(GameCore game) {
+        try {
+            putEmptyTicks();
+            ensureRemaining(ReplayFormat.MAX_VARINT_LENGTH * 3 + Long.BYTES);
+            ReplayFormat.putVarint(buffer, ReplayFormat.END_OF_TICKS);
+            ReplayFormat.putVarint(buffer, ticks);
+            ReplayFormat.putVarint(buffer, game.getScore());
+            buffer.putLong(ReplayFormat.boardHash(game));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void putEmptyTicks() throws IOException {
+        if (emptyTicks > 0) {
+            ensureRemaining(ReplayFormat.MAX_VARINT_LENGTH);
+            ReplayFormat.putVarint(buffer, emptyTicks << 1);
+            emptyTicks = 0;
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            writeBuffer();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (failed) {
+            // Throw away what won't ever be written
+            buffer.clear();
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void fail(IOException e) {
+        if (!failed) {
+            System.out.println("Replay recording failed, no longer recording");
+            e.printStackTrace();
+            failed = true;
+        }
+    }
+
+    /** Writes out anything not yet written, without finishing the log if it hasn't been. */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
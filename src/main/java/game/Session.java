@@ -0,0 +1,129 @@
+package game;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * One game run by a {@link SessionHost}. Think of as GameManager's loop turned inside out: rather than a thread
+ * waiting for each tick, each tick is a task the host's timer hands to a worker once it's due, and the session then
+ * schedules the next one. Only one of a session's ticks ever runs at a time.
+ *
+ * Moves come from its own input queue, which anything can offer to, or from a controller. Either way they're applied
+ * on ticks.
+ */
+final class Session extends TimerWheel.Timeout implements Runnable {
+    private final GameCore game;
+    private final Renderer renderer;
+    private final Runnable endOfTick;
+    private final Controller controller;
+    private final InputQueue input = new InputQueue();
+    private final TickClock clock;
+    private final TickScheduler scheduler;
+    private final TimerWheel timer;
+    private final Executor workers;
+    private final CompletableFuture<GameResult> result = new CompletableFuture<>();
+
+    private long ticks = 0;
+    private long totalLateNanos = 0;
+    private long maxLateNanos = 0;
+    private volatile boolean stopping = false;
+
+    /**
+     * @param renderOut  gets the frames, or null to not draw any
+     * @param controller makes the moves, or null to only take them from {@link #getInput()}
+     */
+    Session(GameCore game, FrameSink renderOut, Runnable endOfTick, Controller controller,
+            TickClock clock, TickScheduler scheduler, TimerWheel timer, Executor workers) {
+        this.game = game;
+        this.renderer = renderOut == null ? null : new Renderer(renderOut);
+        this.endOfTick = endOfTick;
+        this.controller = controller;
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.timer = timer;
+        this.workers = workers;
+    }
+
+    void start() {
+        timer.schedule(this, scheduler.getNextDueNanos());
+    }
+
+    /** Ends the game at its next tick, even if it's not over. */
+    void stop() {
+        stopping = true;
+    }
+
+    @Override
+    void expire() {
+        workers.execute(this);
+    }
+
+    /** Plays one tick the same way GameManager does. */
+    @Override
+    public void run() {
+        try {
+            if (stopping) {
+                finish(false);
+                return;
+            }
+            long tick = scheduler.startNextTick(clock.nanoTime());
+            long lateBy = scheduler.getLateByNanos();
+            totalLateNanos += lateBy;
+            maxLateNanos = Math.max(maxLateNanos, lateBy);
+
+            if (controller != null && game.spawnPieceIfNeeded()) {
+                controller.playTick(game, tick);
+            }
+            TickResult tickResult = game.tick(input);
+            ticks++;
+            if (tickResult == TickResult.GAME_OVER) {
+                finish(true);
+                return;
+            }
+            if (renderer != null && (tickResult == TickResult.VISUAL_CHANGE || tick == 0)) {
+                renderer.render(game.getSnapshot());
+            }
+            endOfTick.run();
+            timer.schedule(this, scheduler.getNextDueNanos());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void finish(boolean over) {
+        if (renderer != null) {
+            renderer.showGameOverScreen(game.getSnapshot());
+        }
+        endOfTick.run();
+        result.complete(new GameResult(game.getSeed(), game.getScore(), game.getLevel(), game.getRowsCleared(),
+                ticks, over));
+    }
+
+    /** For offering moves to, from any one thread at a time. */
+    InputQueue getInput() {
+        return input;
+    }
+
+    /** Completes once the game is over or stopped, or exceptionally if a tick threw. */
+    CompletableFuture<GameResult> getResult() {
+        return result;
+    }
+
+    // The stats below are only up to date once the result's completed
+
+    long getTotalLateNanos() {
+        return totalLateNanos;
+    }
+
+    long getMaxLateNanos() {
+        return maxLateNanos;
+    }
+
+    long getOverruns() {
+        return scheduler.getOverruns();
+    }
+
+    long getSkippedTicks() {
+        return scheduler.getSkippedTicks();
+    }
+}
@@ -0,0 +1,131 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongFunction;
+
+/**
+ * Runs lots of games at once in real time, e.g. for bot leagues & soak tests. Each game is a {@link Session} with its
+ * own moves & output. None of them has a thread of its own: one timer wheel keeps track of when every session's next
+ * tick is due, and a pool with a thread per core runs the ticks. So thousands of sessions cost little more than the
+ * ticks themselves.
+ */
+public final class SessionHost implements AutoCloseable {
+    private static final int TICKS_PER_SECOND = 15;
+    // Finer than anyone would notice, and the wheel goes round about once a second
+    private static final long TIMER_SLOT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int TIMER_SLOTS = 1024;
+    // Sessions started together have their ticks spread over this many points in a tick, rather than all at once
+    private static final int START_OFFSETS = 64;
+
+    private final TickClock clock;
+    private final int ticksPerSecond;
+    private final TimerWheel timer;
+    private final ForkJoinPool workers;
+    // Sessions are started from one thread at a time
+    private long sessionsStarted = 0;
+
+    SessionHost(TickClock clock, int ticksPerSecond, int threads) {
+        this.clock = clock;
+        this.ticksPerSecond = ticksPerSecond;
+        timer = new TimerWheel(clock, TIMER_SLOT_NANOS, TIMER_SLOTS, "Session timer");
+        // Async mode as ticks are independent tasks, never joined
+        workers = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        timer.start();
+    }
+
+    /** Usage: SessionHost [sessions] [idle|random|auto] [seconds] [ticks per second] */
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String controller = args.length > 1 ? args[1] : "random";
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+        int ticksPerSecond = args.length > 3 ? Integer.parseInt(args[3]) : TICKS_PER_SECOND;
+
+        LongFunction<Controller> controllers = BatchRunner.controllerNamed(controller);
+        List<Session> running = new ArrayList<>(sessions);
+        try (SessionHost host = new SessionHost(TickClock.SYSTEM, ticksPerSecond,
+                Runtime.getRuntime().availableProcessors())) {
+            for (int i = 0; i < sessions; i++) {
+                running.add(host.startHeadless(i, controllers.apply(i)));
+            }
+
+            CompletableFuture<Void> allOver = CompletableFuture.allOf(
+                    running.stream().map(Session::getResult).toArray(CompletableFuture<?>[]::new));
+            try {
+                allOver.get(seconds, TimeUnit.SECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // Stop whatever's still going, then report on what there is
+            }
+            running.forEach(Session::stop);
+            allOver.exceptionally(error -> null).join();
+        }
+        report(running, controller, ticksPerSecond);
+    }
+
+    private static void report(List<Session> sessions, String controller, int ticksPerSecond) {
+        BatchRunner.Results results = new BatchRunner.Results(sessions.size());
+        long ticks = 0;
+        long totalLateNanos = 0;
+        long maxLateNanos = 0;
+        long overruns = 0;
+        long skipped = 0;
+        int failed = 0;
+        for (int i = 0; i < sessions.size(); i++) {
+            Session session = sessions.get(i);
+            if (session.getResult().isCompletedExceptionally()) {
+                failed++;
+                continue;
+            }
+            GameResult result = session.getResult().join();
+            results.record(i, result);
+            ticks += result.ticks;
+            totalLateNanos += session.getTotalLateNanos();
+            maxLateNanos = Math.max(maxLateNanos, session.getMaxLateNanos());
+            overruns += session.getOverruns();
+            skipped += session.getSkippedTicks();
+        }
+
+        System.out.printf(Locale.ROOT, "%d sessions (%s) at %d ticks/s: %d ticks played, %d sessions failed%n",
+                sessions.size(), controller, ticksPerSecond, ticks, failed);
+        System.out.printf(Locale.ROOT, "Ticks started late by %.3fms on average, %.3fms at most. "
+                        + "%d a whole tick or more late, %d skipped%n",
+                ticks == 0 ? 0 : totalLateNanos / 1e6 / ticks, maxLateNanos / 1e6, overruns, skipped);
+        System.out.print(results.describe());
+    }
+
+    /**
+     * Starts a game, with tick 0 due within a tick from now. Vibrations go to the game's own vibrator.
+     *
+     * @param renderOut  gets the frames, or null to not draw any
+     * @param endOfTick  called once all of a tick's vibrations & frames have been handed over
+     * @param controller makes the moves, or null to only take them from {@link Session#getInput()}
+     */
+    Session start(GameCore game, FrameSink renderOut, Runnable endOfTick, Controller controller) {
+        long tickNanos = TimeUnit.SECONDS.toNanos(1) / ticksPerSecond;
+        long offset = tickNanos * (sessionsStarted++ % START_OFFSETS) / START_OFFSETS;
+        TickScheduler scheduler = new TickScheduler(clock, ticksPerSecond, TickScheduler.CatchUp.SKIP,
+                clock.nanoTime() + offset);
+        Session session = new Session(game, renderOut, endOfTick, controller, clock, scheduler, timer, workers);
+        session.start();
+        return session;
+    }
+
+    /** Starts a game no one's watching, with nothing drawn or vibrated. */
+    Session startHeadless(long seed, Controller controller) {
+        return start(new GameCore(Vibrator.NONE, seed), null, () -> {
+        }, controller);
+    }
+
+    /** Stops running ticks, leaving any sessions still going unfinished. */
+    @Override
+    public void close() {
+        timer.stop();
+        workers.shutdown();
+    }
+}
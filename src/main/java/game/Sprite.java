@@ -0,0 +1,34 @@
+package game;
+
+import java.util.Arrays;
+
+/** Monochrome image as columns of bits, ready to be ORed into a {@link FrameBuffer}. See {@link SpriteSheet}. */
+final class Sprite {
+    private final int height;
+    // One entry per pixel column, top pixel in the highest bit (see FrameBuffer#orColumn)
+    private final long[] columns;
+
+    /** @param height must be at most 64 */
+    Sprite(int height, long[] columns) {
+        if (height > Long.SIZE) {
+            throw new IllegalArgumentException("Too tall for a sprite: " + height);
+        }
+        this.height = height;
+        this.columns = columns;
+    }
+
+    /** The given vertical slice of this sprite, e.g. one character from a row of them. */
+    Sprite slice(int x, int width) {
+        return new Sprite(height, Arrays.copyOfRange(columns, x, x + width));
+    }
+
+    void drawInto(FrameBuffer frame, int x, int y) {
+        for (int i = 0; i < columns.length; i++) {
+            frame.orColumn(x + i, y, columns[i]);
+        }
+    }
+
+    int getHeight() {
+        return height;
+    }
+}
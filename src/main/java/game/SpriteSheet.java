@@ -0,0 +1,57 @@
+package game;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Every sprite, as packed from the BMPs in src/main/resources by the packSprites Gradle task, so nothing has to decode
+ * images while the game runs. Layout:
+ * <pre>
+ * sprite count (int)
+ * for each sprite: name (modified UTF-8, the file name without .bmp) | width (short) | height (byte)
+ *                  | a long per column of pixels, left to right, with black pixels set & the top one in the highest bit
+ * </pre>
+ */
+final class SpriteSheet {
+    static final String RESOURCE = "/sprites.bin";
+
+    private final Map<String, Sprite> sprites;
+
+    private SpriteSheet(Map<String, Sprite> sprites) {
+        this.sprites = sprites;
+    }
+
+    static SpriteSheet load() throws IOException {
+        InputStream resource = SpriteSheet.class.getResourceAsStream(RESOURCE);
+        if (resource == null) {
+            throw new IOException(RESOURCE + " not found, it's made by the packSprites Gradle task");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(resource))) {
+            int count = in.readInt();
+            Map<String, Sprite> sprites = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int width = in.readUnsignedShort();
+                int height = in.readUnsignedByte();
+                long[] columns = new long[width];
+                for (int x = 0; x < width; x++) {
+                    columns[x] = in.readLong();
+                }
+                sprites.put(name, new Sprite(height, columns));
+            }
+            return new SpriteSheet(sprites);
+        }
+    }
+
+    Sprite get(String name) {
+        Sprite sprite = sprites.get(name);
+        if (sprite == null) {
+            throw new IllegalArgumentException("No sprite named " + name + " in " + RESOURCE);
+        }
+        return sprite;
+    }
+}
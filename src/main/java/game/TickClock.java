@@ -0,0 +1,32 @@
+package game;
+
+import java.util.concurrent.locks.LockSupport;
+
+/** Source of time for {@link TickScheduler}, so something other than the real clock can drive it. */
+interface TickClock {
+    TickClock SYSTEM = new TickClock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void parkNanos(long nanos) {
+            LockSupport.parkNanos(nanos);
+        }
+
+        @Override
+        public void wake(Thread parked) {
+            LockSupport.unpark(parked);
+        }
+    };
+
+    /** Like {@link System#nanoTime()}, only meaningful compared to other readings from the same clock. */
+    long nanoTime();
+
+    /** Waits for up to the given time. Can return early, so callers have to check the time again. */
+    void parkNanos(long nanos);
+
+    /** Makes the given thread return from {@link #parkNanos(long)} early, or straight away if it's not parked yet. */
+    void wake(Thread parked);
+}
@@ -0,0 +1,25 @@
+package game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("tetris.Tick")
+@Label("Game Tick")
+@Category({"Tetris Mouse", "Game"})
+@Description("One call to GameCore.tick")
+class TickEvent extends Event {
+    @Label("Tick Number")
+    long tick;
+
+    @Label("Result")
+    String result;
+
+    @Label("Late By")
+    @Description("How long after it was due the tick started")
+    @Timespan
+    long lateByNanos;
+}
@@ -0,0 +1,121 @@
+package game;
+
+import java.util.function.BooleanSupplier;
+import metrics.Counter;
+import metrics.Metrics;
+
+/**
+ * Paces a fixed number of ticks per second. Every tick's due time is worked out from when the scheduler started, so
+ * timing never drifts however long each tick takes or however late the waits wake up.
+ */
+final class TickScheduler {
+    /** Returned instead of a tick number when woken early. */
+    static final long NO_TICK = -1;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final Counter LATE_TICKS = Metrics.counter("tetris_ticks_late_total",
+            "Ticks that started a whole tick or more after they were due");
+    private static final Counter SKIPPED_TICKS = Metrics.counter("tetris_ticks_skipped_total",
+            "Ticks never run because the game fell behind");
+
+    /** What to do when the game has fallen a whole tick or more behind, e.g. after a slow call or GC pause. */
+    enum CatchUp {
+        /** Run one tick in place of all the missed ones, so the game stays in step with real time. */
+        SKIP,
+        /** Run every missed tick back to back until caught up, so no game time is lost. */
+        BURST
+    }
+
+    private final TickClock clock;
+    private final int ticksPerSecond;
+    private final CatchUp catchUp;
+    private final long startNanos;
+
+    private long nextTick = 0;
+    private long lateByNanos = 0;
+    private long overruns = 0;
+    private long skippedTicks = 0;
+
+    /** Tick 0 is due straight away. */
+    TickScheduler(TickClock clock, int ticksPerSecond, CatchUp catchUp) {
+        this(clock, ticksPerSecond, catchUp, clock.nanoTime());
+    }
+
+    /** Tick 0 is due at the given time. */
+    TickScheduler(TickClock clock, int ticksPerSecond, CatchUp catchUp, long startNanos) {
+        this.clock = clock;
+        this.ticksPerSecond = ticksPerSecond;
+        this.catchUp = catchUp;
+        this.startNanos = startNanos;
+    }
+
+    /** Waits until the next tick is due, returning its number. Numbers only ever go up, but skip any ticks skipped. */
+    long awaitNextTick() {
+        return awaitNextTick(() -> false);
+    }
+
+    /**
+     * Like {@link #awaitNextTick()}, but gives up waiting & returns {@link #NO_TICK} if there's something else to do
+     * first. That's checked before waiting & whenever the waiting thread is woken by {@link TickClock#wake(Thread)}.
+     */
+    long awaitNextTick(BooleanSupplier wakeEarly) {
+        long now = clock.nanoTime();
+        // Compared by subtracting, as nanoTime can overflow
+        while (now - getNextDueNanos() < 0) {
+            if (wakeEarly.getAsBoolean()) {
+                return NO_TICK;
+            }
+            clock.parkNanos(getNextDueNanos() - now);
+            now = clock.nanoTime();
+        }
+        return startNextTick(now);
+    }
+
+    /**
+     * Starts the next tick without waiting for it, returning its number like {@link #awaitNextTick()}. For callers
+     * that wait for {@link #getNextDueNanos()} themselves.
+     */
+    long startNextTick(long now) {
+        long tick = nextTick;
+        if (now - dueTime(tick + 1) >= 0) {
+            // Next tick should already have started
+            overruns++;
+            LATE_TICKS.increment();
+            if (catchUp == CatchUp.SKIP) {
+                long latestDue = (now - startNanos) * ticksPerSecond / NANOS_PER_SECOND;
+                skippedTicks += latestDue - tick;
+                SKIPPED_TICKS.add(latestDue - tick);
+                tick = latestDue;
+            }
+        }
+
+        lateByNanos = now - dueTime(tick);
+        nextTick = tick + 1;
+        return tick;
+    }
+
+    /** When the next tick is due, as read from the clock. */
+    long getNextDueNanos() {
+        return dueTime(nextTick);
+    }
+
+    /** Exact for every tick, rather than adding up a rounded tick length. */
+    private long dueTime(long tick) {
+        return startNanos + tick * NANOS_PER_SECOND / ticksPerSecond;
+    }
+
+    /** How long after it was due the last tick started. */
+    long getLateByNanos() {
+        return lateByNanos;
+    }
+
+    /** Times a tick started a whole tick or more late. */
+    long getOverruns() {
+        return overruns;
+    }
+
+    long getSkippedTicks() {
+        return skippedTicks;
+    }
+}
@@ -0,0 +1,114 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs timeouts when they're due from a single thread, however many there are, so thousands of things waiting on a
+ * time don't each need a sleeping thread.
+ *
+ * Time is cut into slots of a fixed length, laid out around a wheel. A timeout goes in the slot its due time falls in &
+ * is run once the wheel turns past it, so it can run up to a slot late but never early. Timeouts due further off than
+ * one turn of the wheel just sit in their slot until the turn they're due in. Expiring is done on the wheel's thread,
+ * so should only hand the real work off elsewhere.
+ */
+final class TimerWheel {
+    /** Something to run at a time. Only one schedule of it can be waiting at once. */
+    abstract static class Timeout {
+        private long dueSlot;
+        // In the pending stack, then in a slot's list
+        private Timeout next;
+
+        /** Called on the wheel's thread once due. */
+        abstract void expire();
+    }
+
+    private final TickClock clock;
+    private final long slotNanos;
+    private final Timeout[] slots;
+    private final int mask;
+    private final long startNanos;
+    private final Thread thread;
+
+    // Scheduled but not yet put in a slot, as a stack pushed by any thread & taken whole by the wheel's
+    private final AtomicReference<Timeout> pending = new AtomicReference<>();
+    private volatile boolean stopped = false;
+    private long currentSlot = 0;
+
+    /** @param slotCount rounded up to a power of two */
+    TimerWheel(TickClock clock, long slotNanos, int slotCount, String threadName) {
+        this.clock = clock;
+        this.slotNanos = slotNanos;
+        int size = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+        slots = new Timeout[size];
+        mask = size - 1;
+        startNanos = clock.nanoTime();
+        thread = new Thread(this::turnUntilStopped, threadName);
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /** Timeouts not yet run never will be. */
+    void stop() {
+        stopped = true;
+        clock.wake(thread);
+    }
+
+    /** Runs the timeout once the clock reaches the given time. Can be called from any thread. */
+    void schedule(Timeout timeout, long dueNanos) {
+        // A slot is expired once it's over, so it's never run early
+        timeout.dueSlot = Math.floorDiv(dueNanos - startNanos, slotNanos);
+        Timeout head;
+        do {
+            head = pending.get();
+            timeout.next = head;
+        } while (!pending.compareAndSet(head, timeout));
+    }
+
+    private void turnUntilStopped() {
+        while (!stopped) {
+            long slotEnd = startNanos + (currentSlot + 1) * slotNanos;
+            long now = clock.nanoTime();
+            // Compared by subtracting, as nanoTime can overflow
+            while (now - slotEnd < 0 && !stopped) {
+                clock.parkNanos(slotEnd - now);
+                now = clock.nanoTime();
+            }
+            addPending();
+            expireSlot();
+            currentSlot++;
+        }
+    }
+
+    private void addPending() {
+        Timeout timeout = pending.getAndSet(null);
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            // Anything already due goes in the slot about to expire
+            int slot = (int) (Math.max(timeout.dueSlot, currentSlot) & mask);
+            timeout.next = slots[slot];
+            slots[slot] = timeout;
+            timeout = next;
+        }
+    }
+
+    private void expireSlot() {
+        int slot = (int) (currentSlot & mask);
+        Timeout timeout = slots[slot];
+        slots[slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.dueSlot <= currentSlot) {
+                timeout.next = null;
+                timeout.expire();
+            } else {
+                // Due on a later turn of the wheel
+                timeout.next = slots[slot];
+                slots[slot] = timeout;
+            }
+            timeout = next;
+        }
+    }
+}
@@ -1,6 +1,17 @@
 package game;
 
 public interface Vibrator {
+    /** For games no one is holding the mouse for. */
+    Vibrator NONE = new Vibrator() {
+        @Override
+        public void doShortBuzz() {
+        }
+
+        @Override
+        public void doGrandBuzz() {
+        }
+    };
+
     void doShortBuzz();
     void doGrandBuzz();
 }
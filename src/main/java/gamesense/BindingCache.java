@@ -0,0 +1,97 @@
+package gamesense;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Remembers which registrations the engine already has from a previous run, so they aren't sent again on every launch.
+ * Each is remembered by a hash of its request body, so changing a binding gets it sent again.
+ *
+ * The engine's address changes whenever it restarts, so everything's forgotten then too, in case it lost them.
+ */
+final class BindingCache {
+    // Where to keep it, if not in the home directory
+    private static final String FILE_PROPERTY = "tetris.bindingCache";
+    private static final String ADDRESS_KEY = "engine.address";
+
+    private final Path file;
+    private final Properties hashes = new Properties();
+
+    private BindingCache(Path file) {
+        this.file = file;
+    }
+
+    /** Anything remembered for an engine at a different address is ignored. Never fails, just starts empty. */
+    static BindingCache load(String engineAddress) {
+        BindingCache cache = new BindingCache(location());
+        try (Reader in = Files.newBufferedReader(cache.file, StandardCharsets.UTF_8)) {
+            cache.hashes.load(in);
+        } catch (NoSuchFileException e) {
+            // First run
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Couldn't read " + cache.file + ", registering everything again: " + e);
+        }
+        if (!engineAddress.equals(cache.hashes.getProperty(ADDRESS_KEY))) {
+            cache.hashes.clear();
+            cache.hashes.setProperty(ADDRESS_KEY, engineAddress);
+        }
+        return cache;
+    }
+
+    private static Path location() {
+        String configured = System.getProperty(FILE_PROPERTY);
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".tetris-mouse", "gamesense-bindings.properties");
+    }
+
+    /** Forgets everything, e.g. once the game's been removed from the engine. */
+    static void clear() throws IOException {
+        Files.deleteIfExists(location());
+    }
+
+    /** Whether exactly this request was registered last time. */
+    boolean isRegistered(String name, String body) {
+        return hash(body).equals(hashes.getProperty(name));
+    }
+
+    void registered(String name, String body) {
+        hashes.setProperty(name, hash(body));
+    }
+
+    /** Failing to save only means registering again next time, so that's just printed. */
+    void save() {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                hashes.store(out, "Tetris Mouse registrations the Steelseries engine already has");
+            }
+        } catch (IOException e) {
+            System.out.println("Couldn't save " + file + ": " + e);
+        }
+    }
+
+    private static String hash(String body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
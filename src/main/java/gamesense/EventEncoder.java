@@ -0,0 +1,148 @@
+package gamesense;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the JSON bodies for events sent during play straight into bytes, rather than building Maps for Moshi.
+ * Everything but a frame's image data is the same every time, so it's encoded once up front.
+ */
+class EventEncoder {
+    // Each value is a byte (up to 3 digits) plus a comma
+    private static final int MAX_IMAGE_DATA_CHARS = GameSenseApi.IMAGE_DATA_LENGTH * 4;
+
+    private final byte[] gameStart;
+    private final byte[] batchStart;
+    private final byte[] displayStart;
+    private final byte[] displayEnd;
+    // Vibration events as a whole body, and as just the event for adding to a batch
+    private final Map<String, byte[]> vibrationBodies = new HashMap<>();
+    private final Map<String, byte[]> vibrationEvents = new HashMap<>();
+
+    // Reused for every frame/batch, so only one encoded frame & one encoded batch can be in use at a time
+    private final byte[] displayBuffer;
+    private byte[] batchBuffer;
+
+    EventEncoder(String game, String displayEvent, String... vibrationEventNames) {
+        gameStart = ascii("{\"game\":\"" + game + "\",");
+        batchStart = ascii("{\"game\":\"" + game + "\",\"events\":[");
+        displayStart = ascii("\"event\":\"" + displayEvent + "\","
+                // My mouse (Rival 700) is 128x36
+                + "\"data\":{\"value\":100,\"frame\":{\"image-data-128x36\":[");
+        displayEnd = ascii("]}}");
+
+        for (String eventName : vibrationEventNames) {
+            String event = "\"event\":\"" + eventName + "\",\"data\":{\"value\":100}";
+            vibrationBodies.put(eventName, ascii("{\"game\":\"" + game + "\"," + event + "}"));
+            vibrationEvents.put(eventName, ascii("{" + event + "}"));
+        }
+
+        displayBuffer = new byte[gameStart.length + displayStart.length + MAX_IMAGE_DATA_CHARS + displayEnd.length + 1];
+        batchBuffer = new byte[displayBuffer.length];
+    }
+
+    private static byte[] ascii(String str) {
+        return str.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** The whole body for the vibration event, which mustn't be modified. */
+    byte[] vibrationEvent(String eventName) {
+        return lookUpVibration(vibrationBodies, eventName);
+    }
+
+    private static byte[] lookUpVibration(Map<String, byte[]> vibrations, String eventName) {
+        byte[] encoded = vibrations.get(eventName);
+        if (encoded == null) {
+            throw new IllegalArgumentException("Unknown vibration event: " + eventName);
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes a display event into the shared buffer (see {@link #getDisplayBuffer()}), returning the number of bytes
+     * written. This overwrites the previous frame's body, so it mustn't still be in use.
+     */
+    int encodeDisplayEvent(int[] imageData) {
+        int pos = put(displayBuffer, 0, gameStart);
+        pos = writeDisplayEvent(displayBuffer, pos, imageData);
+        displayBuffer[pos++] = '}';
+        return pos;
+    }
+
+    /**
+     * Encodes the events for the multiple_game_events endpoint into the shared buffer (see {@link #getBatchBuffer()}),
+     * returning the number of bytes written. This overwrites the previous batch's body, so it mustn't still be in use.
+     *
+     * @param imageData frame to display after the vibrations, or null for none
+     */
+    int encodeBatch(List<String> vibrationEventNames, int[] imageData) {
+        int maxLength = batchStart.length + displayBuffer.length + 2;
+        for (String eventName : vibrationEventNames) {
+            maxLength += lookUpVibration(vibrationEvents, eventName).length + 1;
+        }
+        if (batchBuffer.length < maxLength) {
+            batchBuffer = Arrays.copyOf(batchBuffer, maxLength);
+        }
+
+        byte[] out = batchBuffer;
+        int pos = put(out, 0, batchStart);
+        for (int i = 0; i < vibrationEventNames.size(); i++) {
+            if (i > 0) {
+                out[pos++] = ',';
+            }
+            pos = put(out, pos, vibrationEvents.get(vibrationEventNames.get(i)));
+        }
+        if (imageData != null) {
+            if (!vibrationEventNames.isEmpty()) {
+                out[pos++] = ',';
+            }
+            out[pos++] = '{';
+            pos = writeDisplayEvent(out, pos, imageData);
+            out[pos++] = '}';
+        }
+        out[pos++] = ']';
+        out[pos++] = '}';
+        return pos;
+    }
+
+    /** Writes the display event's fields, without the surrounding braces. */
+    private int writeDisplayEvent(byte[] out, int pos, int[] imageData) {
+        assert imageData.length == GameSenseApi.IMAGE_DATA_LENGTH;
+        pos = put(out, pos, displayStart);
+        for (int i = 0; i < imageData.length; i++) {
+            if (i > 0) {
+                out[pos++] = ',';
+            }
+            pos = writeByteValue(out, pos, imageData[i]);
+        }
+        return put(out, pos, displayEnd);
+    }
+
+    private static int put(byte[] out, int pos, byte[] bytes) {
+        System.arraycopy(bytes, 0, out, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static int writeByteValue(byte[] out, int pos, int value) {
+        assert 0 <= value && value <= 255;
+        if (value >= 100) {
+            out[pos++] = (byte) ('0' + value / 100);
+        }
+        if (value >= 10) {
+            out[pos++] = (byte) ('0' + value / 10 % 10);
+        }
+        out[pos++] = (byte) ('0' + value % 10);
+        return pos;
+    }
+
+    byte[] getDisplayBuffer() {
+        return displayBuffer;
+    }
+
+    byte[] getBatchBuffer() {
+        return batchBuffer;
+    }
+}
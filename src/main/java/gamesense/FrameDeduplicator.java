@@ -0,0 +1,42 @@
+package gamesense;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the last frame the engine accepted so identical frames don't get sent again.
+ * Frames are only remembered once acknowledged, so a failed send doesn't stop the same frame being retried.
+ */
+class FrameDeduplicator {
+    private final int[] lastAcknowledged;
+    private boolean hasAcknowledged = false;
+
+    private long framesSent = 0;
+    private long framesSuppressed = 0;
+
+    FrameDeduplicator(int frameLength) {
+        lastAcknowledged = new int[frameLength];
+    }
+
+    /** Counts the frame as either suppressed or to be sent, returning true if it's the same as the last one shown. */
+    boolean isDuplicate(int[] frame) {
+        if (hasAcknowledged && Arrays.equals(frame, lastAcknowledged)) {
+            framesSuppressed++;
+            return true;
+        }
+        framesSent++;
+        return false;
+    }
+
+    void acknowledge(int[] frame) {
+        System.arraycopy(frame, 0, lastAcknowledged, 0, lastAcknowledged.length);
+        hasAcknowledged = true;
+    }
+
+    long getFramesSent() {
+        return framesSent;
+    }
+
+    long getFramesSuppressed() {
+        return framesSuppressed;
+    }
+}
@@ -9,24 +9,68 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Labelled;
+import metrics.Metrics;
 
 public class GameSenseApi {
-    private static final String ENGINE_GAME_ID = "TETRIS_MOUSE";
-    private static final String SHORT_VIBRATE_EVENT = "SHORT_VIBRATE";
-    private static final String LONG_VIBRATE_EVENT = "LONG_VIBRATE";
-    private static final String GRAND_VIBRATE_EVENT = "GRAND_VIBRATE";
-    private static final String DISPLAY_EVENT = "DISPLAY";
+    static final String ENGINE_GAME_ID = "TETRIS_MOUSE";
+    static final String SHORT_VIBRATE_EVENT = "SHORT_VIBRATE";
+    static final String LONG_VIBRATE_EVENT = "LONG_VIBRATE";
+    static final String GRAND_VIBRATE_EVENT = "GRAND_VIBRATE";
+    static final String DISPLAY_EVENT = "DISPLAY";
+    static final int IMAGE_DATA_LENGTH = (128 * 36) / 8;
+
+    // host:port of an engine to use instead of the one installed, e.g. a StubEngine
+    static final String ENGINE_ADDRESS_PROPERTY = "tetris.engineAddress";
+
+    // Name the game's own registration is remembered under, alongside the events
+    private static final String GAME_METADATA_KEY = "game_metadata";
+
+    // Types of request, as labelled in metrics
+    private static final String REGISTRATION_REQUEST = "registration";
+    private static final String VIBRATION_REQUEST = "vibration";
+    private static final String DISPLAY_REQUEST = "display";
+    private static final String BATCH_REQUEST = "batch";
+
+    // The engine's on the same machine, so anything slower than this has gone wrong. Without one, a request the engine
+    // never answers would hold up its lane in the dispatcher for good
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(2);
+
+    private static final Labelled<Histogram> REQUEST_DURATION = Metrics.histogram("gamesense_request_duration_seconds",
+            "Time from sending a request to the engine until its response arrives", "type");
+    private static final Labelled<Counter> REQUEST_ERRORS = Metrics.counter("gamesense_request_errors_total",
+            "Requests to the engine that failed or didn't get a 200 response", "type");
 
     private final HttpClient client = HttpClient.newHttpClient();
     private final JsonAdapter<Map<String, Object>> mapAdapter;
+    private final EventEncoder eventEncoder = new EventEncoder(ENGINE_GAME_ID, DISPLAY_EVENT,
+            SHORT_VIBRATE_EVENT, LONG_VIBRATE_EVENT, GRAND_VIBRATE_EVENT);
+
+    // Whether to print requests & responses, which is a lot of printing when under load
+    private final boolean verbose;
 
     private String engineAddress;
+    private volatile boolean multipleEventsSupported = true;
 
     public GameSenseApi() {
+        this(true);
+    }
+
+    GameSenseApi(boolean verbose) {
+        this.verbose = verbose;
         Moshi moshi = new Moshi.Builder().build();
         Type map = Types.newParameterizedType(Map.class, String.class, Object.class);
         mapAdapter = moshi.adapter(map);
@@ -38,10 +82,14 @@ public class GameSenseApi {
         } catch (IOException e) {
             throw new IOException("Could not get Game Sense engine address", e);
         }
-        System.out.println(engineAddress);
+        log(engineAddress);
     }
 
     private String getEngineAddress() throws IOException {
+        String configured = System.getProperty(ENGINE_ADDRESS_PROPERTY);
+        if (configured != null) {
+            return configured;
+        }
         // TODO: exception thrown if file doesn't exist
         String fileContents = Files.readString(
                 Paths.get(System.getenv("PROGRAMDATA"), "SteelSeries/SteelSeries Engine 3/coreProps.json"));
@@ -50,42 +98,74 @@ public class GameSenseApi {
         return (String) result.get("address");
     }
 
+    /**
+     * Registers the game & binds its events, skipping anything the engine already has from last time (see
+     * {@link BindingCache}). The bindings don't depend on each other, so they're all sent at once.
+     */
     public void registerGameAndEvents() throws IOException, InterruptedException {
-        String registerGameString = mapAdapter.toJson(Map.of(
+        String registerGameString = registrationJson(Map.of(
                 "game", ENGINE_GAME_ID,
                 "game_display_name", "Tetris Mouse"
         ));
-        post("/game_metadata", registerGameString);
 
-        bindVibrationGameEvent(SHORT_VIBRATE_EVENT, List.of(
+        Map<String, String> bindings = new LinkedHashMap<>();
+        bindings.put(SHORT_VIBRATE_EVENT, vibrationBinding(SHORT_VIBRATE_EVENT, List.of(
                 customVibrateStep(200, 0)
-        ));
-        bindVibrationGameEvent(LONG_VIBRATE_EVENT, List.of(
+        )));
+        bindings.put(LONG_VIBRATE_EVENT, vibrationBinding(LONG_VIBRATE_EVENT, List.of(
                 customVibrateStep(600, 0)
-        ));
-        bindVibrationGameEvent(GRAND_VIBRATE_EVENT, List.of(
+        )));
+        bindings.put(GRAND_VIBRATE_EVENT, vibrationBinding(GRAND_VIBRATE_EVENT, List.of(
                 customVibrateStep(200, 200),
                 vibrateStep("ti_predefined_doubleclick_100", 350),
                 customVibrateStep(600, 0)
-        ));
+        )));
 
-        bindGameEvent(DISPLAY_EVENT, Map.of(
+        bindings.put(DISPLAY_EVENT, binding(DISPLAY_EVENT, Map.of(
                 "device-type", "screened-128x36",
                 "zone", "one",
                 "mode", "screen",
                 "datas", List.of(
                         Map.of(
                                 "has-text", false,
-                                "image-data", new int[(128 * 36) / 8] // Empty so it can be set by the actual events
+                                "image-data", new int[IMAGE_DATA_LENGTH] // Empty so it can be set by the actual events
                         )
                 )
-        ));
+        )));
+
+        BindingCache cache = BindingCache.load(engineAddress);
+        // Events can only be bound once the game's registered
+        if (!cache.isRegistered(GAME_METADATA_KEY, registerGameString)
+                && post("/game_metadata", REGISTRATION_REQUEST, registerGameString) == 200) {
+            cache.registered(GAME_METADATA_KEY, registerGameString);
+        }
+
+        Map<String, CompletableFuture<Integer>> responses = new LinkedHashMap<>();
+        for (Map.Entry<String, String> binding : bindings.entrySet()) {
+            if (!cache.isRegistered(binding.getKey(), binding.getValue())) {
+                responses.put(binding.getKey(), postAsync("/bind_game_event", REGISTRATION_REQUEST,
+                        HttpRequest.BodyPublishers.ofString(binding.getValue())));
+            }
+        }
+        try {
+            for (Map.Entry<String, CompletableFuture<Integer>> response : responses.entrySet()) {
+                if (response.getValue().join() == 200) {
+                    cache.registered(response.getKey(), bindings.get(response.getKey()));
+                }
+            }
+        } catch (CompletionException e) {
+            // Any bound before it are worth remembering
+            cache.save();
+            throw new IOException("Could not bind game events", e.getCause());
+        }
+        cache.save();
+        log("Bound " + responses.size() + " events, " + (bindings.size() - responses.size()) + " already bound");
     }
 
     // Limit is 5 steps in pattern, with customs counting as 2 steps
     // (idfk why the docs say the limit is 140. That's just wrong)
-    private void bindVibrationGameEvent(String eventName, List<Map<String, Object>> vibrationPattern) throws IOException, InterruptedException {
-        bindGameEvent(eventName, Map.of(
+    private String vibrationBinding(String eventName, List<Map<String, Object>> vibrationPattern) {
+        return binding(eventName, Map.of(
                 "device-type", "tactile",
                 "zone", "one",
                 "mode", "vibrate",
@@ -93,20 +173,40 @@ public class GameSenseApi {
         ));
     }
 
-    private void bindGameEvent(String eventName, Map<String, Object> handler) throws IOException, InterruptedException {
-        String bindEvent = mapAdapter.toJson(Map.of(
+    private String binding(String eventName, Map<String, Object> handler) {
+        return registrationJson(Map.of(
                 "game", ENGINE_GAME_ID,
                 "event", eventName,
                 "value_optional", true,
                 "handlers", List.of(handler)
         ));
-        System.out.println(bindEvent);
-        post("/bind_game_event", bindEvent);
     }
 
+    /** With keys in a set order, unlike Map.of's, so the same registration is always the same JSON. */
+    private String registrationJson(Map<String, Object> request) {
+        return mapAdapter.toJson(sortKeys(request));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T sortKeys(T value) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            ((Map<String, Object>) value).forEach((key, entry) -> sorted.put(key, sortKeys(entry)));
+            return (T) sorted;
+        }
+        if (value instanceof List) {
+            List<Object> sorted = new ArrayList<>();
+            ((List<Object>) value).forEach(entry -> sorted.add(sortKeys(entry)));
+            return (T) sorted;
+        }
+        return value;
+    }
+
+    /** Removes the game & its events from the engine, so they'll all be registered again next time. */
     public void unregisterGame() throws IOException, InterruptedException {
         String removeGameString = mapAdapter.toJson(Map.of("game", ENGINE_GAME_ID));
-        post("/remove_game", removeGameString);
+        post("/remove_game", REGISTRATION_REQUEST, removeGameString);
+        BindingCache.clear();
     }
 
     public void shortVibrate() throws IOException, InterruptedException {
@@ -122,31 +222,83 @@ public class GameSenseApi {
     }
 
     private void postVibrationEvent(String eventName) throws IOException, InterruptedException {
-        String str = mapAdapter.toJson(Map.of(
-                "game", ENGINE_GAME_ID,
-                "event", eventName,
-                "data", Map.of(
-                        "value", 100
-                )
-        ));
-        System.out.println(str);
-        post("/game_event", str);
+        byte[] body = eventEncoder.vibrationEvent(eventName);
+        if (verbose) {
+            log(new String(body, StandardCharsets.US_ASCII));
+        }
+        post("/game_event", VIBRATION_REQUEST, HttpRequest.BodyPublishers.ofByteArray(body));
+    }
+
+    private int post(String end, String requestType, String dataString) throws IOException, InterruptedException {
+        return post(end, requestType, HttpRequest.BodyPublishers.ofString(dataString));
+    }
+
+    /** Returns the response's status code. */
+    private int post(String end, String requestType, HttpRequest.BodyPublisher body)
+            throws IOException, InterruptedException {
+        HttpRequest registerGame = buildPostRequest(end, body);
+        RequestEvent event = new RequestEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            int status = checkResponse(client.send(registerGame, HttpResponse.BodyHandlers.ofString()));
+            recordRequest(event, end, requestType, body, start, status);
+            return status;
+        } catch (IOException e) {
+            recordRequest(event, end, requestType, body, start, -1);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Integer> postAsync(String end, String requestType, HttpRequest.BodyPublisher body) {
+        HttpRequest request = buildPostRequest(end, body);
+        RequestEvent event = new RequestEvent();
+        event.begin();
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(this::checkResponse)
+                .whenComplete((status, error) ->
+                        recordRequest(event, end, requestType, body, start, error == null ? status : -1));
+    }
+
+    /** @param status -1 if there was no response */
+    private static void recordRequest(RequestEvent event, String end, String requestType,
+                                      HttpRequest.BodyPublisher body, long startNanos, int status) {
+        REQUEST_DURATION.get(requestType).recordSince(startNanos);
+        if (status != 200) {
+            REQUEST_ERRORS.get(requestType).increment();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.endpoint = end;
+            event.requestType = requestType;
+            event.status = status;
+            event.payloadSize = body.contentLength();
+            event.commit();
+        }
     }
 
-    private void post(String end, String dataString) throws IOException, InterruptedException {
-        HttpRequest registerGame = buildPostRequest(end, dataString);
-        var response = client.send(registerGame, HttpResponse.BodyHandlers.ofString());
-        System.out.println(response.statusCode() + "\t" + response.uri());
+    /** Returns the request's status code, printing the outcome too if verbose. */
+    private int checkResponse(HttpResponse<String> response) {
+        log(response.statusCode() + "\t" + response.uri());
         if (response.statusCode() != 200) {
-            System.out.println("\t" + response.body() + "\n\n");
+            log("\t" + response.body() + "\n\n");
         }
+        return response.statusCode();
     }
 
-    private HttpRequest buildPostRequest(String end, String dataString) {
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
+    }
+
+    private HttpRequest buildPostRequest(String end, HttpRequest.BodyPublisher body) {
         return HttpRequest.newBuilder()
                 .uri(URI.create("http://" + engineAddress + end))
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(dataString))
+                .timeout(REQUEST_TIMEOUT)
+                .POST(body)
                 .build();
     }
 
@@ -165,17 +317,59 @@ public class GameSenseApi {
         );
     }
 
-    public void showImage(int[] imageData) throws IOException, InterruptedException {
-        post("/game_event", mapAdapter.toJson(Map.of(
-                "game", ENGINE_GAME_ID,
-                "event", DISPLAY_EVENT,
-                "data", Map.of(
-                        "value", 100,
-                        "frame", Map.of(
-                                // My mouse (Rival 700) is 128x36
-                                "image-data-128x36", imageData
-                        )
-                )
-        )));
+    /**
+     * Sends the vibrations then the frame (if not null) in a single request where possible, falling back to a request
+     * per event if the engine doesn't support multiple_game_events.
+     * Completes without waiting for the engine to respond, with 200 if every event was accepted or otherwise the first
+     * failing status code.
+     *
+     * Request bodies are encoded into shared buffers, so this mustn't be called again with a frame, or with more than
+     * one event, until the previous such call's future has completed.
+     */
+    CompletableFuture<Integer> postEventsAsync(List<String> vibrationEvents, int[] imageData) {
+        int numEvents = vibrationEvents.size() + (imageData == null ? 0 : 1);
+        if (numEvents > 1 && multipleEventsSupported) {
+            int length = eventEncoder.encodeBatch(vibrationEvents, imageData);
+            return postAsync("/multiple_game_events", BATCH_REQUEST,
+                    HttpRequest.BodyPublishers.ofByteArray(eventEncoder.getBatchBuffer(), 0, length))
+                    .thenCompose(status -> {
+                        if (status != 404) {
+                            return CompletableFuture.completedFuture(status);
+                        }
+                        // Older engine without the endpoint, so stop trying it
+                        multipleEventsSupported = false;
+                        return postEachEventAsync(vibrationEvents, imageData);
+                    });
+        }
+        return postEachEventAsync(vibrationEvents, imageData);
+    }
+
+    private CompletableFuture<Integer> postEachEventAsync(List<String> vibrationEvents, int[] imageData) {
+        if (vibrationEvents.isEmpty()) {
+            // Just a frame, which is most of the time
+            return postDisplayEventAsync(imageData);
+        }
+        List<CompletableFuture<Integer>> responses = new ArrayList<>();
+        for (String eventName : vibrationEvents) {
+            responses.add(postAsync("/game_event", VIBRATION_REQUEST,
+                    HttpRequest.BodyPublishers.ofByteArray(eventEncoder.vibrationEvent(eventName))));
+        }
+        if (imageData != null) {
+            responses.add(postDisplayEventAsync(imageData));
+        }
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            for (CompletableFuture<Integer> response : responses) {
+                if (response.join() != 200) {
+                    return response.join();
+                }
+            }
+            return 200;
+        });
+    }
+
+    private CompletableFuture<Integer> postDisplayEventAsync(int[] imageData) {
+        int length = eventEncoder.encodeDisplayEvent(imageData);
+        return postAsync("/game_event", DISPLAY_REQUEST,
+                HttpRequest.BodyPublishers.ofByteArray(eventEncoder.getDisplayBuffer(), 0, length));
     }
 }
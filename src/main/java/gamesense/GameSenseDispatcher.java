@@ -0,0 +1,254 @@
+package gamesense;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Sends game events to the engine from its own thread, so the game loop only ever hands events over and never waits
+ * on the network.
+ *
+ * Events handed over during a tick are held until {@link #flush()} is called at the end of it, then sent together in
+ * one request so vibrations & visuals arrive in sync.
+ *
+ * Vibrations and display frames go in separate lanes, each with at most one request in flight. Vibrations are queued
+ * & sent in turn, unless the engine falls so far behind that the queue fills, when only one of each kind is kept
+ * waiting. Only the newest frame matters though, so a frame waiting to be sent is replaced (dropped) by any newer one.
+ *
+ * Frames are lent by the renderer, so each is handed back once it's been sent (or dropped or suppressed).
+ */
+public class GameSenseDispatcher {
+    // The engine would have to stop responding for a lot of line clears for this to fill up. Past it, a vibration
+    // that's already waiting isn't queued again
+    private static final int MAX_QUEUED_VIBRATIONS = 32;
+    private static final long CLOSE_TIMEOUT_MS = 2000;
+
+    private final GameSenseApi gameSenseApi;
+    private final FrameDeduplicator frameDeduplicator = new FrameDeduplicator(GameSenseApi.IMAGE_DATA_LENGTH);
+    private final Thread thread;
+
+    // Everything below is guarded by lock
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // Handed over during the current tick
+    private final List<String> tickVibrations = new ArrayList<>();
+    private int[] tickFrame = null;
+    private Consumer<int[]> tickFrameRelease = null;
+    // Flushed & waiting to be sent
+    private final Deque<String> vibrations = new ArrayDeque<>();
+    private int[] pendingFrame = null;
+    private Consumer<int[]> pendingFrameRelease = null;
+    private boolean vibrationInFlight = false;
+    private boolean frameInFlight = false;
+    private boolean closed = false;
+    private long framesDropped = 0;
+    private long vibrationsCoalesced = 0;
+
+    public GameSenseDispatcher(GameSenseApi gameSenseApi) {
+        this.gameSenseApi = gameSenseApi;
+        thread = new Thread(this::dispatchUntilClosed, "GameSense dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void shortVibrate() {
+        queueVibration(GameSenseApi.SHORT_VIBRATE_EVENT);
+    }
+
+    public void grandVibrate() {
+        queueVibration(GameSenseApi.GRAND_VIBRATE_EVENT);
+    }
+
+    /** Borrows the frame, which mustn't be changed until it's passed back to release. */
+    public void showImage(int[] imageData, Consumer<int[]> release) {
+        lock.lock();
+        try {
+            if (tickFrame != null) {
+                framesDropped++;
+                tickFrameRelease.accept(tickFrame);
+            }
+            tickFrame = imageData;
+            tickFrameRelease = release;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void queueVibration(String eventName) {
+        lock.lock();
+        try {
+            tickVibrations.add(eventName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Sends everything handed over since the last flush together. */
+    public void flush() {
+        lock.lock();
+        try {
+            // Never waits for room, as the game's thread mustn't wait on the network. There are only a few kinds of
+            // vibration, so keeping one of each waiting once full keeps the queue small however long the engine's gone
+            for (String vibration : tickVibrations) {
+                if (vibrations.size() < MAX_QUEUED_VIBRATIONS || !vibrations.contains(vibration)) {
+                    vibrations.add(vibration);
+                } else {
+                    vibrationsCoalesced++;
+                }
+            }
+            tickVibrations.clear();
+            if (tickFrame != null) {
+                if (pendingFrame != null) {
+                    framesDropped++;
+                    pendingFrameRelease.accept(pendingFrame);
+                }
+                pendingFrame = tickFrame;
+                pendingFrameRelease = tickFrameRelease;
+                tickFrame = null;
+                tickFrameRelease = null;
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatchUntilClosed() {
+        while (true) {
+            List<String> vibrationsToSend = List.of();
+            int[] frame = null;
+            Consumer<int[]> frameRelease = null;
+            lock.lock();
+            try {
+                while (!canSendVibration() && !canSendFrame() && !(closed && isIdle())) {
+                    changed.awaitUninterruptibly();
+                }
+                if (closed && isIdle()) {
+                    return;
+                }
+                if (canSendVibration()) {
+                    vibrationInFlight = true;
+                    vibrationsToSend = new ArrayList<>(vibrations);
+                    vibrations.clear();
+                }
+                if (canSendFrame()) {
+                    frame = pendingFrame;
+                    frameRelease = pendingFrameRelease;
+                    pendingFrame = null;
+                    pendingFrameRelease = null;
+                    if (frameDeduplicator.isDuplicate(frame)) {
+                        frameRelease.accept(frame);
+                        frame = null;
+                    } else {
+                        frameInFlight = true;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // Building requests can take a moment, so don't hold up the game handing over more events meanwhile
+            if (!vibrationsToSend.isEmpty() || frame != null) {
+                send(vibrationsToSend, frame, frameRelease);
+            }
+        }
+    }
+
+    private boolean canSendVibration() {
+        return !vibrationInFlight && !vibrations.isEmpty();
+    }
+
+    private boolean canSendFrame() {
+        return !frameInFlight && pendingFrame != null;
+    }
+
+    private boolean isIdle() {
+        return !vibrationInFlight && !frameInFlight && vibrations.isEmpty() && pendingFrame == null;
+    }
+
+    private void send(List<String> vibrationsToSend, int[] frame, Consumer<int[]> frameRelease) {
+        CompletableFuture<Integer> response;
+        try {
+            response = gameSenseApi.postEventsAsync(vibrationsToSend, frame);
+        } catch (Exception e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((status, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+            lock.lock();
+            try {
+                if (!vibrationsToSend.isEmpty()) {
+                    vibrationInFlight = false;
+                }
+                if (frame != null) {
+                    if (error == null && status == 200) {
+                        frameDeduplicator.acknowledge(frame);
+                    }
+                    frameRelease.accept(frame);
+                    frameInFlight = false;
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    public long getFramesSent() {
+        lock.lock();
+        try {
+            return frameDeduplicator.getFramesSent();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFramesSuppressed() {
+        lock.lock();
+        try {
+            return frameDeduplicator.getFramesSuppressed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFramesDropped() {
+        lock.lock();
+        try {
+            return framesDropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Vibrations not sent because the same kind was already waiting in a full queue. */
+    public long getVibrationsCoalesced() {
+        lock.lock();
+        try {
+            return vibrationsCoalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Waits a short time for anything already handed over to be sent, then stops. */
+    public void close() throws InterruptedException {
+        flush();
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        thread.join(CLOSE_TIMEOUT_MS);
+    }
+}
@@ -0,0 +1,194 @@
+package gamesense;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends frames (and now & then vibrations) through {@link GameSenseApi} as fast as it can, or at a set rate, then
+ * reports how many events a second got through & how long requests took.
+ *
+ * Uses the engine at tetris.engineAddress if set, otherwise starts a {@link StubEngine} with the given latency, jitter
+ * & error rate. Each client has its own GameSenseApi with one request in flight at a time, like the dispatcher's frame
+ * lane. At a set rate, latency counts from when each frame was due rather than when it was sent, so a client falling
+ * behind shows up as latency instead of just fewer frames.
+ */
+public final class LoadTest {
+    private static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(2);
+    // Roughly how often the game vibrates compared to drawing, erring on the side of often
+    private static final int FRAMES_PER_VIBRATION = 20;
+    private static final int DIFFERENT_FRAMES = 64;
+
+    private LoadTest() {
+    }
+
+    /** Usage: LoadTest [seconds] [clients] [frames per second, 0 for flat out] [latency ms] [jitter ms] [error rate] */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        long latencyMillis = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        long jitterMillis = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        double errorRate = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+        if (clients < 1) {
+            System.out.println("Usage: LoadTest [seconds] [clients, at least 1] [frames per second, 0 for flat out]"
+                    + " [latency ms] [jitter ms] [error rate]");
+            System.exit(2);
+        }
+
+        StubEngine stub = null;
+        if (System.getProperty(GameSenseApi.ENGINE_ADDRESS_PROPERTY) == null) {
+            stub = new StubEngine(0, latencyMillis, jitterMillis, errorRate);
+            stub.start();
+            System.setProperty(GameSenseApi.ENGINE_ADDRESS_PROPERTY, stub.getAddress());
+        }
+        try {
+            run(seconds, clients, rate);
+            if (stub != null) {
+                System.out.printf(Locale.ROOT, "Stub engine: %d requests, %d events accepted, %d errors injected%n",
+                        stub.getRequests(), stub.getEventsAccepted(), stub.getErrorsInjected());
+            }
+        } finally {
+            if (stub != null) {
+                stub.stop();
+            }
+        }
+    }
+
+    private static void run(long seconds, int clients, double rate) throws IOException, InterruptedException {
+        List<Client> running = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            GameSenseApi api = new GameSenseApi(false);
+            api.initialise();
+            running.add(new Client(api, i));
+        }
+        GameSenseApi registrar = running.get(0).api;
+        registrar.registerGameAndEvents();
+
+        long intervalNanos = rate > 0 ? (long) (clients * 1e9 / rate) : 0;
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + WARMUP_NANOS;
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>();
+        for (Client client : running) {
+            // Spread clients' frames evenly across each interval, rather than all at once
+            long first = start + intervalNanos * client.index / clients;
+            Thread thread = new Thread(() -> client.run(first, intervalNanos, measureFrom, end), "Load test " + client.index);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        try {
+            registrar.unregisterGame();
+        } catch (IOException e) {
+            System.out.println("Couldn't remove the game: " + e);
+        }
+        report(running, seconds, clients, rate);
+    }
+
+    private static void report(List<Client> clients, long seconds, int clientCount, double rate) {
+        long requests = 0;
+        long events = 0;
+        long failed = 0;
+        long[] latencies = new long[0];
+        for (Client client : clients) {
+            requests += client.requests;
+            events += client.events;
+            failed += client.failed;
+            int from = latencies.length;
+            latencies = Arrays.copyOf(latencies, from + client.latencyCount);
+            System.arraycopy(client.latencies, 0, latencies, from, client.latencyCount);
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf(Locale.ROOT, "%d clients, %s for %ds: %d requests, %d failed%n",
+                clientCount, rate > 0 ? String.format(Locale.ROOT, "%.0f frames/s", rate) : "flat out",
+                seconds, requests, failed);
+        System.out.printf(Locale.ROOT, "Sustained %.0f events/s (%.0f requests/s)%n",
+                events / (double) seconds, requests / (double) seconds);
+        if (latencies.length > 0) {
+            System.out.printf(Locale.ROOT, "Latency ms: p50 %.2f | p90 %.2f | p99 %.2f | p99.9 %.2f | max %.2f%n",
+                    percentile(latencies, 50) / 1e6, percentile(latencies, 90) / 1e6, percentile(latencies, 99) / 1e6,
+                    percentile(latencies, 99.9) / 1e6, latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private static long percentile(long[] sorted, double percent) {
+        int i = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+        return sorted[Math.max(0, i)];
+    }
+
+    /** Sends a frame at a time through its own GameSenseApi, counting what was sent after the warmup. */
+    private static final class Client {
+        final GameSenseApi api;
+        final int index;
+        final int[][] frames = new int[DIFFERENT_FRAMES][GameSenseApi.IMAGE_DATA_LENGTH];
+
+        long requests = 0;
+        // Accepted ones only
+        long events = 0;
+        long failed = 0;
+        long[] latencies = new long[1024];
+        int latencyCount = 0;
+
+        Client(GameSenseApi api, int index) {
+            this.api = api;
+            this.index = index;
+            Random random = new Random(index);
+            for (int[] frame : frames) {
+                for (int i = 0; i < frame.length; i++) {
+                    frame[i] = random.nextInt(256);
+                }
+            }
+        }
+
+        /** @param intervalNanos between frames, or 0 to send the next as soon as the last is done */
+        void run(long first, long intervalNanos, long measureFrom, long end) {
+            long due = first;
+            for (long sent = 0; ; sent++) {
+                long now;
+                while ((now = System.nanoTime()) < due) {
+                    LockSupport.parkNanos(due - now);
+                }
+                if (now >= end) {
+                    return;
+                }
+                long sendStart = intervalNanos > 0 ? due : now;
+                due += intervalNanos;
+
+                List<String> vibrations = sent % FRAMES_PER_VIBRATION == 0
+                        ? List.of(GameSenseApi.SHORT_VIBRATE_EVENT) : List.of();
+                int status;
+                try {
+                    status = api.postEventsAsync(vibrations, frames[(int) (sent % frames.length)]).join();
+                } catch (CompletionException e) {
+                    status = -1;
+                }
+                long latency = System.nanoTime() - sendStart;
+
+                if (sendStart < measureFrom) {
+                    continue;
+                }
+                requests++;
+                if (status == 200) {
+                    events += vibrations.size() + 1;
+                } else {
+                    failed++;
+                }
+                if (latencyCount == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, latencies.length * 2);
+                }
+                latencies[latencyCount++] = latency;
+            }
+        }
+    }
+}
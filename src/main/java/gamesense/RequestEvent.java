@@ -0,0 +1,28 @@
+package gamesense;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("tetris.GameSenseRequest")
+@Label("GameSense Request")
+@Category({"Tetris Mouse", "GameSense"})
+@Description("A POST to the Steelseries engine, from sending until the response arrives")
+class RequestEvent extends Event {
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Request Type")
+    String requestType;
+
+    @Label("Status Code")
+    @Description("HTTP status of the response, or -1 if there wasn't one")
+    int status;
+
+    @Label("Payload Size")
+    @DataAmount
+    long payloadSize;
+}
@@ -0,0 +1,263 @@
+package gamesense;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for the Steelseries engine, for running the game or {@link LoadTest} without one (e.g. on Linux). Point
+ * the game at it with the tetris.engineAddress system property.
+ *
+ * Understands the endpoints the game uses, checking games & events are registered before they're used like the engine
+ * does, but doesn't show or vibrate anything. Responses can be slowed down by a fixed latency plus random jitter, and a
+ * share of requests can be failed with a 500.
+ */
+public class StubEngine {
+    private static final int DEFAULT_PORT = 0;
+
+    static {
+        // Otherwise each response's body waits on the client acknowledging its headers, adding ~40ms to every request
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Stub engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final JsonAdapter<Map<String, Object>> mapAdapter;
+
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double errorRate;
+
+    // Game -> its bound events
+    private final Map<String, Set<String>> games = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong eventsAccepted = new AtomicLong();
+    private final AtomicLong errorsInjected = new AtomicLong();
+
+    /**
+     * @param port     0 for any free port
+     * @param errorRate chance of a request failing, from 0 to 1
+     */
+    public StubEngine(int port, long latencyMillis, long jitterMillis, double errorRate) throws IOException {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+        this.errorRate = errorRate;
+
+        Moshi moshi = new Moshi.Builder().build();
+        Type map = Types.newParameterizedType(Map.class, String.class, Object.class);
+        mapAdapter = moshi.adapter(map);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // Each request waits out its latency on its own thread, so slow responses don't queue up behind each other
+        server.setExecutor(executor);
+        server.createContext("/game_metadata", exchange -> handle(exchange, this::registerGame));
+        server.createContext("/bind_game_event", exchange -> handle(exchange, this::bindEvent));
+        server.createContext("/game_event", exchange -> handle(exchange, this::gameEvent));
+        server.createContext("/multiple_game_events", exchange -> handle(exchange, this::multipleGameEvents));
+        server.createContext("/remove_game", exchange -> handle(exchange, this::removeGame));
+    }
+
+    /** Usage: StubEngine [port] [latency ms] [jitter ms] [error rate] */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        long jitterMillis = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        double errorRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+        StubEngine engine = new StubEngine(port, latencyMillis, jitterMillis, errorRate);
+        engine.start();
+        System.out.println("Stub engine at " + engine.getAddress()
+                + ", run the game with -Dtetris.engineAddress=" + engine.getAddress());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** host:port, as the engine's coreProps.json would give it. */
+    public String getAddress() {
+        InetSocketAddress address = server.getAddress();
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getEventsAccepted() {
+        return eventsAccepted.get();
+    }
+
+    public long getErrorsInjected() {
+        return errorsInjected.get();
+    }
+
+    /** Handles a request's JSON body, returning an error message for a 400, or null if it was fine. */
+    private interface Handler {
+        String handle(Map<String, Object> body);
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            requests.incrementAndGet();
+            byte[] requestBody;
+            try (InputStream in = exchange.getRequestBody()) {
+                requestBody = in.readAllBytes();
+            }
+            delay();
+
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only POST is supported");
+                return;
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errorsInjected.incrementAndGet();
+                respond(exchange, 500, "Injected error");
+                return;
+            }
+
+            Map<String, Object> body;
+            try {
+                body = mapAdapter.fromJson(new String(requestBody, StandardCharsets.UTF_8));
+            } catch (IOException | JsonDataException e) {
+                respond(exchange, 400, "Malformed JSON: " + e.getMessage());
+                return;
+            }
+            String error = body == null ? "Empty body" : handler.handle(body);
+            respond(exchange, error == null ? 200 : 400, error);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void delay() {
+        long nanos = latencyNanos;
+        if (jitterNanos > 0) {
+            nanos += ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+        }
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** @param error null for a successful response */
+    private void respond(HttpExchange exchange, int status, String error) throws IOException {
+        String json = error == null ? "{}" : mapAdapter.toJson(Map.of("error", error));
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String registerGame(Map<String, Object> body) {
+        Object game = body.get("game");
+        if (!(game instanceof String)) {
+            return "Missing game";
+        }
+        games.putIfAbsent((String) game, ConcurrentHashMap.newKeySet());
+        return null;
+    }
+
+    private String bindEvent(Map<String, Object> body) {
+        Set<String> events = games.get(body.get("game"));
+        if (events == null) {
+            return "Game not registered: " + body.get("game");
+        }
+        Object event = body.get("event");
+        if (!(event instanceof String)) {
+            return "Missing event";
+        }
+        if (!(body.get("handlers") instanceof List)) {
+            return "Missing handlers";
+        }
+        events.add((String) event);
+        return null;
+    }
+
+    private String gameEvent(Map<String, Object> body) {
+        Set<String> events = games.get(body.get("game"));
+        if (events == null) {
+            return "Game not registered: " + body.get("game");
+        }
+        String error = checkEvent(events, body);
+        if (error == null) {
+            eventsAccepted.incrementAndGet();
+        }
+        return error;
+    }
+
+    private String multipleGameEvents(Map<String, Object> body) {
+        Set<String> events = games.get(body.get("game"));
+        if (events == null) {
+            return "Game not registered: " + body.get("game");
+        }
+        if (!(body.get("events") instanceof List)) {
+            return "Missing events";
+        }
+        List<?> batch = (List<?>) body.get("events");
+        for (Object event : batch) {
+            if (!(event instanceof Map)) {
+                return "Event isn't an object";
+            }
+            String error = checkEvent(events, (Map<?, ?>) event);
+            if (error != null) {
+                return error;
+            }
+        }
+        eventsAccepted.addAndGet(batch.size());
+        return null;
+    }
+
+    private static String checkEvent(Set<String> boundEvents, Map<?, ?> event) {
+        if (!boundEvents.contains(event.get("event"))) {
+            return "Event not bound: " + event.get("event");
+        }
+        if (!(event.get("data") instanceof Map)) {
+            return "Missing data";
+        }
+        return null;
+    }
+
+    private String removeGame(Map<String, Object> body) {
+        if (games.remove(body.get("game")) == null) {
+            return "Game not registered: " + body.get("game");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Count that only goes up. Cheap to increment from many threads at once. */
+public final class Counter implements Metric {
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+
+    @Override
+    public void writeSamples(StringBuilder out, String name, String labels) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(count.sum()).append('\n');
+    }
+}
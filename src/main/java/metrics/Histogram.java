@@ -0,0 +1,68 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of durations, counted into fixed buckets so recording never allocates or locks.
+ * Percentiles are worked out from the buckets by whatever reads the metrics (e.g. Prometheus' histogram_quantile).
+ */
+public final class Histogram implements Metric {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final double[] upperBoundsSeconds;
+    private final long[] upperBoundsNanos;
+    // Not cumulative, with a final extra bucket for anything above the last bound
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAdder count = new LongAdder();
+
+    Histogram(double[] upperBoundsSeconds) {
+        this.upperBoundsSeconds = upperBoundsSeconds.clone();
+        upperBoundsNanos = new long[upperBoundsSeconds.length];
+        for (int i = 0; i < upperBoundsSeconds.length; i++) {
+            upperBoundsNanos[i] = (long) (upperBoundsSeconds[i] * NANOS_PER_SECOND);
+            if (i > 0 && upperBoundsNanos[i] <= upperBoundsNanos[i - 1]) {
+                throw new IllegalArgumentException("Bucket bounds must be increasing");
+            }
+        }
+        buckets = new LongAdder[upperBoundsSeconds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        int bucket = 0;
+        while (bucket < upperBoundsNanos.length && nanos > upperBoundsNanos[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+        count.increment();
+    }
+
+    /** Records the time since startNanos, as given by {@link System#nanoTime()}. */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public void writeSamples(StringBuilder out, String name, String labels) {
+        String labelPrefix = labels.isEmpty() ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            String le = i < upperBoundsSeconds.length ? Double.toString(upperBoundsSeconds[i]) : "+Inf";
+            out.append(name).append("_bucket{").append(labelPrefix).append("le=\"").append(le).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        String labelSuffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(labelSuffix).append(' ')
+                .append(sumNanos.sum() / NANOS_PER_SECOND).append('\n');
+        out.append(name).append("_count").append(labelSuffix).append(' ').append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/** One metric per value of a label, e.g. a latency histogram for each type of event. */
+public final class Labelled<T extends Metric> implements Metric {
+    private final String labelName;
+    private final Supplier<T> factory;
+    private final Map<String, T> byValue = new ConcurrentHashMap<>();
+
+    Labelled(String labelName, Supplier<T> factory) {
+        this.labelName = labelName;
+        this.factory = factory;
+    }
+
+    public T get(String labelValue) {
+        T metric = byValue.get(labelValue);
+        if (metric == null) {
+            metric = byValue.computeIfAbsent(labelValue, ignored -> factory.get());
+        }
+        return metric;
+    }
+
+    @Override
+    public void writeSamples(StringBuilder out, String name, String labels) {
+        String labelPrefix = labels.isEmpty() ? "" : labels + ",";
+        byValue.forEach((value, metric) ->
+                metric.writeSamples(out, name, labelPrefix + labelName + "=\"" + value + "\""));
+    }
+}
@@ -0,0 +1,9 @@
+package metrics;
+
+/** Something that can write its current value(s) as Prometheus text format samples. */
+interface Metric {
+    /**
+     * @param labels label pairs to include in every sample, e.g. {@code event="display"}, or an empty string for none
+     */
+    void writeSamples(StringBuilder out, String name, String labels);
+}
@@ -0,0 +1,72 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registry of every metric in the game. Metrics are created once (usually as static fields of the class recording
+ * them) and live for the rest of the run.
+ */
+public final class Metrics {
+    /** Bucket bounds, in seconds, suited to anything from a tick's work to a slow HTTP request. */
+    public static final double[] DURATION_BUCKETS = {
+            0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005,
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5
+    };
+
+    private static final class Registered {
+        final String name;
+        final String help;
+        final String type;
+        final Metric metric;
+
+        Registered(String name, String help, String type, Metric metric) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.metric = metric;
+        }
+    }
+
+    private static final List<Registered> REGISTERED = new ArrayList<>();
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name, String help) {
+        return register(name, help, "counter", new Counter());
+    }
+
+    public static Labelled<Counter> counter(String name, String help, String labelName) {
+        return register(name, help, "counter", new Labelled<>(labelName, Counter::new));
+    }
+
+    public static Histogram histogram(String name, String help) {
+        return register(name, help, "histogram", new Histogram(DURATION_BUCKETS));
+    }
+
+    public static Labelled<Histogram> histogram(String name, String help, String labelName) {
+        return register(name, help, "histogram", new Labelled<>(labelName, () -> new Histogram(DURATION_BUCKETS)));
+    }
+
+    private static synchronized <T extends Metric> T register(String name, String help, String type, T metric) {
+        for (Registered registered : REGISTERED) {
+            if (registered.name.equals(name)) {
+                throw new IllegalStateException("Metric already registered: " + name);
+            }
+        }
+        REGISTERED.add(new Registered(name, help, type, metric));
+        return metric;
+    }
+
+    /** Every metric in Prometheus' text exposition format. */
+    public static synchronized String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        for (Registered registered : REGISTERED) {
+            out.append("# HELP ").append(registered.name).append(' ').append(registered.help).append('\n');
+            out.append("# TYPE ").append(registered.name).append(' ').append(registered.type).append('\n');
+            registered.metric.writeSamples(out, registered.name, "");
+        }
+        return out.toString();
+    }
+}
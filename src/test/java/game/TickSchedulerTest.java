@@ -0,0 +1,132 @@
+package game;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.BooleanSupplier;
+import org.junit.Test;
+
+public class TickSchedulerTest {
+    private static final int TICKS_PER_SECOND = 15;
+    private static final long START = 1_000_000L;
+
+    /** Only moves when told to. Parking moves it on by however long was asked, or by at most parkStep if that's set. */
+    private static final class FakeClock implements TickClock {
+        long now = START;
+        long parkStep = 0;
+        int parks = 0;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void parkNanos(long nanos) {
+            parks++;
+            now += parkStep > 0 ? Math.min(parkStep, nanos) : nanos;
+        }
+
+        @Override
+        public void wake(Thread parked) {
+        }
+    }
+
+    private static long due(long start, long tick) {
+        return start + tick * 1_000_000_000L / TICKS_PER_SECOND;
+    }
+
+    @Test
+    public void dueTimesNeverDrift() {
+        FakeClock clock = new FakeClock();
+        TickScheduler scheduler = new TickScheduler(clock, TICKS_PER_SECOND, TickScheduler.CatchUp.SKIP);
+        for (long n = 0; n < 100_000; n++) {
+            assertEquals(n, scheduler.awaitNextTick());
+            assertEquals(due(START, n), clock.now);
+            assertEquals(0, scheduler.getLateByNanos());
+        }
+        assertEquals(0, scheduler.getOverruns());
+        assertEquals(0, scheduler.getSkippedTicks());
+    }
+
+    @Test
+    public void keepsTimeAcrossNanoTimeOverflow() {
+        FakeClock clock = new FakeClock();
+        clock.now = Long.MAX_VALUE - 1_000_000_000L;
+        long start = clock.now;
+        TickScheduler scheduler = new TickScheduler(clock, TICKS_PER_SECOND, TickScheduler.CatchUp.SKIP);
+        for (long n = 0; n < 100; n++) {
+            assertEquals(n, scheduler.awaitNextTick());
+            assertEquals(due(start, n), clock.now);
+        }
+        assertEquals(0, scheduler.getOverruns());
+    }
+
+    @Test
+    public void skipJumpsToTheLatestTickDue() {
+        FakeClock clock = new FakeClock();
+        TickScheduler scheduler = new TickScheduler(clock, TICKS_PER_SECOND, TickScheduler.CatchUp.SKIP);
+        assertEquals(0, scheduler.awaitNextTick());
+
+        // Tick 0 took until partway through tick 5
+        clock.now = due(START, 5) + 1000;
+        assertEquals(5, scheduler.awaitNextTick());
+        assertEquals(4, scheduler.getSkippedTicks());
+        assertEquals(1, scheduler.getOverruns());
+        assertEquals(1000, scheduler.getLateByNanos());
+        assertEquals(due(START, 6), scheduler.getNextDueNanos());
+
+        assertEquals(6, scheduler.awaitNextTick());
+        assertEquals(due(START, 6), clock.now);
+        assertEquals(1, scheduler.getOverruns());
+    }
+
+    @Test
+    public void burstRunsEveryMissedTickBackToBack() {
+        FakeClock clock = new FakeClock();
+        TickScheduler scheduler = new TickScheduler(clock, TICKS_PER_SECOND, TickScheduler.CatchUp.BURST);
+        assertEquals(0, scheduler.awaitNextTick());
+
+        clock.now = due(START, 5) + 1000;
+        int parks = clock.parks;
+        for (long n = 1; n <= 5; n++) {
+            assertEquals(n, scheduler.awaitNextTick());
+        }
+        assertEquals(parks, clock.parks);
+        assertEquals(due(START, 5) + 1000, clock.now);
+        // Every tick but the last started a whole tick or more late
+        assertEquals(4, scheduler.getOverruns());
+        assertEquals(0, scheduler.getSkippedTicks());
+
+        assertEquals(6, scheduler.awaitNextTick());
+        assertEquals(due(START, 6), clock.now);
+    }
+
+    @Test
+    public void wakingEarlyReturnsNoTick() {
+        FakeClock clock = new FakeClock();
+        clock.parkStep = 1_000_000;
+        TickScheduler scheduler = new TickScheduler(clock, TICKS_PER_SECOND, TickScheduler.CatchUp.SKIP);
+        assertEquals(0, scheduler.awaitNextTick());
+
+        // Already something to do before waiting at all
+        int parks = clock.parks;
+        assertEquals(TickScheduler.NO_TICK, scheduler.awaitNextTick(() -> true));
+        assertEquals(parks, clock.parks);
+
+        // Woken during the wait
+        boolean[] woken = {false};
+        BooleanSupplier wakeEarly = () -> {
+            boolean wake = woken[0];
+            woken[0] = true;
+            return wake;
+        };
+        assertEquals(TickScheduler.NO_TICK, scheduler.awaitNextTick(wakeEarly));
+        assertEquals(parks + 1, clock.parks);
+        assertTrue(clock.now < due(START, 1));
+
+        // The tick's still to come
+        assertEquals(1, scheduler.awaitNextTick());
+        assertEquals(due(START, 1), clock.now);
+    }
+}